@@ -0,0 +1,66 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import crawler.model.Context;
+import crawler.model.Context.Strategy;
+
+/* Blacklist matching against a growing number of patterns */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextBenchmark {
+	private static final int URLS = 1 << 10;
+
+	@Param({ "1", "10", "100", "1000" })
+	public int patterns;
+
+	private BlacklistContext context;
+	private String[] urls;
+	private int next;
+
+	@Setup
+	public void setup() {
+		List<String> blacklist = new ArrayList<>();
+		for (int i=0; i<patterns; i++)
+			blacklist.add(i % 2 == 0 ? "*.tracker"+i+".com" : "*ads"+i+"*");
+		context = new BlacklistContext();
+		context.blacklist(blacklist);
+		urls = new String[URLS];
+		for (int i=0; i<URLS; i++)	// 1 in 8 is blacklisted
+			urls[i] = i % 8 == 0 ? "http://www.tracker"+2 * (i / 8 % ((patterns + 1) / 2))+".com" : "http://www.host"+i+".com/page/"+i;
+	}
+
+	@Benchmark
+	public boolean isBlacklisted() {
+		return context.blacklisted(urls[next++ & (URLS - 1)]);
+	}
+
+	/* isBlacklisted is only visible to subclasses */
+	private static class BlacklistContext extends Context<String> {
+		BlacklistContext() {
+			super(Strategy.BREADTH_FIRST);
+		}
+
+		boolean blacklisted(String url) {
+			return isBlacklisted(url);
+		}
+	}
+}
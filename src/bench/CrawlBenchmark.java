@@ -0,0 +1,83 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import crawler.GraphCrawler;
+import crawler.MultiGraphCrawler;
+import crawler.SyntheticGraph;
+import crawler.model.Context;
+import crawler.model.Context.Strategy;
+import crawler.model.Log;
+
+/**
+ * Whole crawls over a seeded power-law {@link SyntheticGraph} without
+ * latency, so that only the engine is measured: storage, visited set,
+ * blacklist and bookkeeping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CrawlBenchmark {
+	private static final int MAX_DEPTH = 64;
+
+	@Param({ "100000" })
+	public int nodes;
+
+	@Param({ "BREADTH_FIRST", "DEPTH_FIRST" })
+	public Strategy strategy;
+
+	@Param({ "1", "4" })
+	public int threads;
+
+	private SyntheticGraph graph;
+	private Context<Long> context;
+	private GraphCrawler single;
+	private MultiGraphCrawler multi;
+
+	@Setup
+	public void generate() {
+		Log.setLevel(Log.Level.OFF);
+		graph = SyntheticGraph.powerLaw(nodes);
+	}
+
+	@Setup(Level.Invocation)
+	public void reset() {
+		context = Context.<Long>create(strategy).push(0L);
+		if (threads == 1)
+			single = new GraphCrawler(context, MAX_DEPTH, graph);
+		else
+			multi = new MultiGraphCrawler(context, MAX_DEPTH, threads, graph);
+	}
+
+	@TearDown(Level.Invocation)
+	public void close() {
+		if (multi != null)
+			multi.close();
+	}
+
+	@Benchmark
+	public int crawl() throws Exception {
+		if (single != null)
+			single.executeStrategy();
+		else
+			multi.crawl();
+		return context.count();
+	}
+}
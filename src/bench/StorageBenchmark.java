@@ -0,0 +1,97 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import crawler.model.ConcurrentQueueStorage;
+import crawler.model.LinearStorage;
+import crawler.model.PriorityStorage;
+import crawler.model.WorkStealingStorage;
+
+/* Push then pop on a shared frontier, alone and with 4 threads contending,
+ * one element at a time or a batch (in ns per batch) at once. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+	private static final int PREFILL = 1 << 10;	// so that pops don't just hit an empty storage
+	private static final int BATCH = 16;
+	private static final List<Integer> ELEMENTS = Collections.nCopies(BATCH, 42);
+
+	@Param({ "synchronised", "queue", "stack", "priority" })
+	public String storage;
+
+	private LinearStorage<Integer> frontier;
+
+	@Setup
+	public void setup() {
+		switch (storage) {
+			case "synchronised": frontier = LinearStorage.of(new LinkedList<>()); break;
+			case "queue": frontier = new ConcurrentQueueStorage<>(); break;
+			case "stack": frontier = new WorkStealingStorage<>(); break;
+			case "priority": frontier = new PriorityStorage<>(Integer::doubleValue); break;
+			default: throw new IllegalArgumentException("Unknown storage "+storage);
+		}
+		for (int i=0; i<PREFILL; i++)
+			frontier.push(i);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Integer uncontended() {
+		return pushPop();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Integer contended() {
+		return pushPop();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public int batchedUncontended(Buffer buffer) {
+		return pushPopAll(buffer.elements);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int batchedContended(Buffer buffer) {
+		return pushPopAll(buffer.elements);
+	}
+
+	private Integer pushPop() {
+		frontier.push(42);
+		return frontier.pop();
+	}
+
+	private int pushPopAll(List<Integer> buffer) {
+		frontier.pushAll(ELEMENTS);
+		buffer.clear();
+		return frontier.drainTo(buffer, BATCH);
+	}
+
+	@State(Scope.Thread)
+	public static class Buffer {
+		final List<Integer> elements = new ArrayList<>(BATCH);
+	}
+}
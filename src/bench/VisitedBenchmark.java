@@ -0,0 +1,70 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import crawler.model.Context;
+import crawler.model.Context.Strategy;
+import crawler.model.ExactVisitedSet;
+import crawler.model.HashedVisitedSet;
+import crawler.model.VisitedSet;
+
+/* Context.wasVisited once a million URLs were visited, for hits and misses */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class VisitedBenchmark {
+	private static final int SAMPLES = 1 << 12;
+
+	@Param({ "exact", "hashed" })
+	public String visited;
+
+	@Param({ "1000000" })
+	public int size;
+
+	private Context<String> context;
+	private String[] hits, misses;
+	private int next;
+
+	@Setup
+	public void setup() {
+		VisitedSet<String> set = visited.equals("exact") ? new ExactVisitedSet<>() : new HashedVisitedSet<>(size);
+		context = Context.create(Strategy.BREADTH_FIRST, set);
+		for (int i=0; i<size; i++)
+			context.markVisited(url(i));
+		hits = new String[SAMPLES];
+		misses = new String[SAMPLES];
+		for (int i=0; i<SAMPLES; i++) {
+			hits[i] = url((int) ((long) i * size / SAMPLES));	// new instances, so hashes aren't cached
+			misses[i] = url(size + i);
+		}
+	}
+
+	private static String url(int i) {
+		return "http://www.host"+i+".com/page";
+	}
+
+	@Benchmark
+	public boolean hit() {
+		return context.wasVisited(hits[next++ & (SAMPLES - 1)]);
+	}
+
+	@Benchmark
+	public boolean miss() {
+		return context.wasVisited(misses[next++ & (SAMPLES - 1)]);
+	}
+}
@@ -4,6 +4,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.net.URL;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -229,6 +230,25 @@ public class Browser implements Closeable, Cloneable {
     	return console().executeScript(code, args);
     }
     
+    /**
+     * Resolved href of every anchor in the current page, without 
+     * duplicates, fetched in a single script call instead of one 
+     * WebDriver call per anchor.
+     */
+    public List<String> links() {
+    	Object links = execute(
+    		"var links = new Set();" +
+    		"for (var a of document.getElementsByTagName('a'))" +
+    		"	if (typeof a.href === 'string' && a.href) links.add(a.href);" +	// SVG anchors aren't strings
+    		"return Array.from(links);");
+    	List<String> hrefs = new ArrayList<>();
+    	if (links instanceof List)
+    		for (Object link : (List<?>) links)
+    			if (link != null)
+    				hrefs.add(link.toString());
+    	return hrefs;
+    }
+    
     public Browser alert(String msg) {
     	execute(String.format("alert(\"%s\")", msg));
     	return this;
@@ -1,5 +1,9 @@
 package browser.common;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -11,6 +15,12 @@ import io.github.bonigarcia.wdm.WebDriverManager;
 import io.github.bonigarcia.wdm.config.DriverManagerType;
 
 public class BrowserConfigurator<K> {
+	/* Driver binaries resolved so far, keyed by type and architecture, 
+	 * and the ones provisioned by hand for offline use. */
+	private static final Map<String, String> resolved = new ConcurrentHashMap<>();
+	private static final Map<DriverManagerType, String> provisioned = new ConcurrentHashMap<>();
+	private static volatile boolean offline;
+	
 	private final Supplier<K> options;
 	private final Function<K, RemoteWebDriver> creator;
 	private final DriverManagerType type;
@@ -21,16 +31,71 @@ public class BrowserConfigurator<K> {
 		this.type = type;
 	}
 	
-	/* Checks that a specific browser driver is already 
-	 * downloaded, otherwise downloads correct version.
-	 */
 	public RemoteWebDriver createDriver() {
-		WebDriverManager manager = WebDriverManager.getInstance(type);
-		manager = Constants.is64Bit ? manager.arch64() : manager.arch32();
-		manager.setup();
+		resolve(type);
 		return creator.apply(options.get());
 	}
 	
+	/**
+	 * Checks that a specific browser driver is already downloaded, 
+	 * otherwise downloads correct version. This is only done once per 
+	 * driver type and architecture for the whole process, since the 
+	 * driver's system property stays set afterwards.
+	 * 
+	 * @return the path of the driver binary
+	 * @throws IllegalStateException if offline and no driver was provisioned
+	 */
+	public static String resolve(DriverManagerType type) {
+		String arch = Constants.is64Bit ? "64" : "32";
+		return resolved.computeIfAbsent(type + "/" + arch, key -> {	// concurrent callers wait for the first one
+			String path = provisioned.get(type);
+			if (path != null) {
+				String property = propertyOf(type);
+				if (property != null)
+					System.setProperty(property, path);
+				return path;
+			}
+			if (offline)
+				throw new IllegalStateException("No "+type+" driver was provisioned for offline mode");
+			WebDriverManager manager = WebDriverManager.getInstance(type);
+			manager = Constants.is64Bit ? manager.arch64() : manager.arch32();
+			manager.setup();
+			return manager.getDownloadedDriverPath();
+		});
+	}
+	
+	/**
+	 * Uses the given driver binary instead of resolving one through 
+	 * WebDriverManager (e.g. on machines without network access).
+	 */
+	public static void provision(DriverManagerType type, Path driver) {
+		if (!Files.isExecutable(driver))
+			throw new IllegalArgumentException("Driver isn't an executable file: "+driver);
+		provisioned.put(type, driver.toAbsolutePath().toString());
+		resolved.keySet().removeIf(key -> key.startsWith(type + "/"));
+	}
+	
+	/* When offline, only provisioned drivers can be used */
+	public static void setOffline(boolean offline) {
+		BrowserConfigurator.offline = offline;
+	}
+	
+	public static boolean isOffline() {
+		return offline;
+	}
+	
+	/* System property Selenium reads the driver path from */
+	private static String propertyOf(DriverManagerType type) {
+		switch (type) {
+			case CHROME: case CHROMIUM: return "webdriver.chrome.driver";
+			case FIREFOX: return "webdriver.gecko.driver";
+			case EDGE: return "webdriver.edge.driver";
+			case OPERA: return "webdriver.opera.driver";
+			case IEXPLORER: return "webdriver.ie.driver";
+			default: return null;	// e.g. Safari's driver ships with the OS
+		}
+	}
+	
 	/**
 	 * Centralises building + convenience methods
 	 * for options (allows generic methods like
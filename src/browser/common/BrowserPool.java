@@ -0,0 +1,200 @@
+package browser.common;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.openqa.selenium.remote.AbstractDriverOptions;
+
+/**
+ * Pool of up to {@code size} browsers that can be leased by crawlers
+ * (or selectors) for as long as they need them, so that the cost of
+ * launching a browser is only paid once instead of once per worker.
+ * <p>
+ * Browsers can be launched in parallel ahead of time through
+ * {@link #warmUp()}. Each browser is recycled (e.g. killed then
+ * replaced in the background) after {@code maxLeases} leases, and
+ * dead browsers are discarded and replaced the same way. The pool
+ * outlives crawls, so it can be shared by successive ones.
+ */
+public class BrowserPool implements Closeable {
+	public static final int DEFAULT_MAX_LEASES = 100;
+	private static final long LEASE_POLLING = 1000;	// ms
+
+	private final Supplier<Browser> factory;
+	private final int size, maxLeases;
+	private final LinkedBlockingDeque<Browser> idle;
+	private final Map<Browser, AtomicInteger> leases;		// per live browser
+	private final AtomicInteger live;
+	private final ExecutorService launcher;
+	private volatile boolean closed;
+
+	public BrowserPool(Supplier<Browser> factory, int size, int maxLeases) {
+		if (size <= 0)
+			throw new IllegalArgumentException("Pool size can only be strict positive integers");
+		this.factory = factory;
+		this.size = size;
+		this.maxLeases = maxLeases;
+		idle = new LinkedBlockingDeque<>();
+		leases = new ConcurrentHashMap<>();
+		live = new AtomicInteger();
+		launcher = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "Browser launcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public <K extends AbstractDriverOptions<?>> BrowserPool(BrowserConfigurator<K> configurator, int size) {
+		this(() -> new Browser(configurator), size, DEFAULT_MAX_LEASES);
+	}
+
+	/**
+	 * Launches browsers in parallel until the pool is full.
+	 * @throws ExecutionException if any of them failed to launch
+	 */
+	public BrowserPool warmUp() throws InterruptedException, ExecutionException {
+		List<Future<?>> launches = new ArrayList<>();
+		while (reserve())
+			launches.add(launcher.submit(() -> idle.addFirst(launch())));
+		for (Future<?> launch : launches)
+			launch.get();
+		return this;
+	}
+
+	/* Leasing */
+
+	/**
+	 * Hands out an idle browser, launching a new one if the pool isn't
+	 * full yet, or waits for one to be released otherwise. Recently
+	 * released browsers are handed out first.
+	 */
+	public Browser lease() throws InterruptedException {
+		if (closed)
+			throw new IllegalStateException("Browser pool is closed");
+		Browser browser = idle.pollFirst();
+		// Polls so that a replacement that failed to launch doesn't leave us waiting forever
+		while (browser == null && (browser = reserve() ? launch() : idle.pollFirst(LEASE_POLLING, TimeUnit.MILLISECONDS)) == null)
+			if (closed)
+				throw new IllegalStateException("Browser pool is closed");
+		leases.get(browser).incrementAndGet();
+		return browser;
+	}
+
+	/* Gives a browser back to the pool, recycling it if it was leased too many times */
+	public void release(Browser browser) {
+		AtomicInteger count = leases.get(browser);
+		if (count == null)
+			throw new IllegalArgumentException("Browser doesn't belong to this pool");
+		if (closed || (maxLeases > 0 && count.get() >= maxLeases))
+			discard(browser);
+		else
+			idle.addFirst(browser);
+	}
+
+	/* Kills a browser (e.g. crashed or unresponsive), a new one is launched in its place */
+	public void discard(Browser browser) {
+		if (leases.remove(browser) == null)
+			return;
+		try { browser.kill(); }
+		catch (Exception e) { /* already dead */ }
+		live.decrementAndGet();
+		if (closed)
+			return;
+		try {
+			launcher.execute(() -> {
+				if (!reserve())
+					return;
+				Browser replacement = launch();
+				if (closed)
+					discard(replacement);
+				else
+					idle.addLast(replacement);
+			});
+		} catch (RejectedExecutionException e) {
+			/* closed in the meantime */
+		}
+	}
+
+	/**
+	 * Round-trip to the browser to check that it's still responding.
+	 */
+	public static boolean isAlive(Browser browser) {
+		try {
+			return browser.getDriver().getSessionId() != null
+				&& browser.getCurrentUrl() != null;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/* Releases the browser if it's still responding, discards it otherwise */
+	public void check(Browser browser) {
+		if (isAlive(browser))
+			release(browser);
+		else
+			discard(browser);
+	}
+
+	/* Internal helpers */
+
+	private boolean reserve() {
+		for (int count; (count = live.get()) < size;)
+			if (live.compareAndSet(count, count + 1))
+				return true;
+		return false;
+	}
+
+	/* Only called after a successful reservation */
+	private Browser launch() {
+		try {
+			Browser browser = factory.get();
+			leases.put(browser, new AtomicInteger());
+			return browser;
+		} catch (RuntimeException e) {
+			live.decrementAndGet();
+			throw e;
+		}
+	}
+
+	/* Accessors */
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getMaxLeases() {
+		return maxLeases;
+	}
+
+	/* Number of browsers currently launched, whether leased or not */
+	public int live() {
+		return live.get();
+	}
+
+	public int idle() {
+		return idle.size();
+	}
+
+	/**
+	 * Kills idle browsers, leased ones are killed when released.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		launcher.shutdown();
+		for (Browser browser; (browser = idle.pollFirst()) != null;)
+			discard(browser);
+	}
+}
@@ -0,0 +1,335 @@
+package crawler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Immutable int-indexed snapshot of a link graph in compressed sparse
+ * row (CSR) form. Edges are grouped by target, so that the sources
+ * linking to node v are {@code source(inStart(v)) .. source(inEnd(v)-1)},
+ * which is what a pull-based PageRank iteration needs.
+ * <p>
+ * Snapshots can be written to a directory holding a node table and an
+ * edge file, which {@link #map(Path)} maps back without copying them
+ * on the heap, so graphs larger than the heap can still be ranked.
+ * Every snapshot gets its own subdirectory, the one to map is named
+ * by a manifest file that is swapped atomically once it's complete.
+ */
+public class CsrGraph {
+	public static final String NODES = "nodes.bin", EDGES = "edges.bin", MANIFEST = "CURRENT";
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final int MAGIC = 0x43535247, VERSION = 1;	// "CSRG"
+	private static final int NODES_HEADER = 20, EDGES_HEADER = 24;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final int size;
+	private final String[] names;		// null when names are read from nameBytes
+	private final int[] offsets;		// size n+1, in-edges of v are [offsets[v], offsets[v+1])
+	private final int[] sources;		// size m
+	private final int[] outDegrees;		// size n
+	// Mapped snapshots read the same from files instead, arrays are null then (and kept otherwise since they're faster)
+	private final MappedFile nodeFile, edgeFile;
+	private final int mappedEdges;
+	private final long nameBytes;		// UTF-8 names, name of v is [offset(v), offset(v+1)) from there, the n+1 offsets follow the header
+	private final long mappedOffsets, mappedOutDegrees, mappedSources;
+
+	CsrGraph(String[] names, int[] offsets, int[] sources, int[] outDegrees) {
+		size = names.length;
+		this.names = names;
+		this.offsets = offsets;
+		this.sources = sources;
+		this.outDegrees = outDegrees;
+		nodeFile = edgeFile = null;
+		mappedEdges = 0;
+		nameBytes = mappedOffsets = mappedOutDegrees = mappedSources = 0;
+	}
+
+	private CsrGraph(int size, int edges, MappedFile nodeFile, MappedFile edgeFile) {
+		this.size = size;
+		this.nodeFile = nodeFile;
+		this.edgeFile = edgeFile;
+		mappedEdges = edges;
+		nameBytes = NODES_HEADER + (size + 1L) * Integer.BYTES;
+		mappedOffsets = EDGES_HEADER;
+		mappedOutDegrees = mappedOffsets + (size + 1L) * Integer.BYTES;
+		mappedSources = mappedOutDegrees + (long) size * Integer.BYTES;
+		names = null;
+		offsets = sources = outDegrees = null;
+	}
+
+	/**
+	 * Builds a snapshot from a source -> targets map. Every URL is a
+	 * node, including targets that were never crawled themselves.
+	 */
+	public static CsrGraph from(Map<String, ? extends Collection<String>> connections) {
+		Map<String, Integer> ids = new HashMap<>();
+		int[] from = new int[16], to = new int[16];
+		int m = 0;
+		// Copy edges first since the map can still be modified by crawlers
+		for (Map.Entry<String, ? extends Collection<String>> entry : connections.entrySet()) {
+			int source = ids.computeIfAbsent(entry.getKey(), key -> ids.size());
+			for (String target : entry.getValue()) {
+				if (m == from.length) {
+					from = Arrays.copyOf(from, m * 2);
+					to = Arrays.copyOf(to, m * 2);
+				}
+				from[m] = source;
+				to[m++] = ids.computeIfAbsent(target, key -> ids.size());
+			}
+		}
+		String[] names = new String[ids.size()];
+		ids.forEach((name, id) -> names[id] = name);
+		return of(names, from, to, m);
+	}
+
+	/* Counting sort of the edges by target */
+	static CsrGraph of(String[] names, int[] from, int[] to, int m) {
+		int n = names.length;
+		int[] offsets = new int[n + 1], outDegrees = new int[n], sources = new int[m];
+		for (int e=0; e<m; e++) {
+			offsets[to[e] + 1]++;
+			outDegrees[from[e]]++;
+		}
+		for (int v=0; v<n; v++)
+			offsets[v + 1] += offsets[v];
+		int[] cursor = Arrays.copyOf(offsets, n);
+		for (int e=0; e<m; e++)
+			sources[cursor[to[e]]++] = from[e];
+		return new CsrGraph(names, offsets, sources, outDegrees);
+	}
+
+	/* Persistence */
+
+	/**
+	 * Writes the graph to the directory, replacing any previous snapshot.
+	 * Both files are written to a new subdirectory, which only replaces
+	 * the previous one once the manifest naming it has been renamed over
+	 * the old one. A crash at any point leaves the previous snapshot
+	 * mapped, older subdirectories are deleted once the swap is done.
+	 */
+	public void write(Path directory) throws IOException {
+		long stamp = System.nanoTime() ^ System.currentTimeMillis() << 20;
+		String name = String.format("%s%016x", SNAPSHOT_PREFIX, stamp);
+		Path snapshot = Files.createDirectories(directory.resolve(name));
+		Path nodes = snapshot.resolve(NODES), edges = snapshot.resolve(EDGES);
+		try (FileChannel channel = FileChannel.open(nodes, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = header(stamp);
+			byte[][] encoded = new byte[size][];
+			int offset = 0;
+			buffer.putInt(offset);
+			for (int v=0; v<size; v++) {
+				encoded[v] = name(v).getBytes(StandardCharsets.UTF_8);
+				if ((offset += encoded[v].length) < 0)
+					throw new IOException("Node names can't take more than 2 GB");
+				buffer = putInt(channel, buffer, offset);
+			}
+			for (byte[] bytes : encoded) {
+				for (int i=0; i<bytes.length; i+=BUFFER_SIZE) {
+					int length = Math.min(BUFFER_SIZE, bytes.length - i);
+					if (buffer.remaining() < length)
+						flush(channel, buffer);
+					buffer.put(bytes, i, length);
+				}
+			}
+			flush(channel, buffer);
+			channel.force(true);
+		}
+		try (FileChannel channel = FileChannel.open(edges, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = header(stamp).putInt(edges());
+			for (int v=0; v<=size; v++)
+				buffer = putInt(channel, buffer, inStart(v));
+			for (int v=0; v<size; v++)
+				buffer = putInt(channel, buffer, outDegree(v));
+			for (int e=0; e<edges(); e++)
+				buffer = putInt(channel, buffer, source(e));
+			flush(channel, buffer);
+			channel.force(true);
+		}
+		sync(snapshot);
+		Path manifest = directory.resolve(MANIFEST + ".tmp");
+		Files.write(manifest, name.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC);
+		Files.move(manifest, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		sync(directory);
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path old : (Iterable<Path>) files::iterator)
+				if (old.getFileName().toString().startsWith(SNAPSHOT_PREFIX) && !old.equals(snapshot))
+					delete(old);
+		}
+	}
+
+	/* Makes renames durable, only possible on some platforms (e.g. not on Windows) */
+	private static void sync(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// best effort
+		}
+	}
+
+	/* Stale snapshots are only disk space, left for the next checkpoint if they can't be deleted */
+	private static void delete(Path snapshot) {
+		try {
+			Files.deleteIfExists(snapshot.resolve(NODES));
+			Files.deleteIfExists(snapshot.resolve(EDGES));
+			Files.deleteIfExists(snapshot);
+		} catch (IOException e) {
+			// retried on the next write
+		}
+	}
+
+	private ByteBuffer header(long stamp) {
+		return ByteBuffer.allocate(BUFFER_SIZE)
+			.order(ByteOrder.LITTLE_ENDIAN)
+			.putInt(MAGIC)
+			.putInt(VERSION)
+			.putLong(stamp)
+			.putInt(size);
+	}
+
+	private static ByteBuffer putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+		if (buffer.remaining() < Integer.BYTES)
+			flush(channel, buffer);
+		return buffer.putInt(value);
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Maps a snapshot written by {@link #write(Path)} read-only. Pages
+	 * are only loaded when accessed and can be evicted by the OS, so
+	 * the graph doesn't need to fit in the heap.
+	 * @return null if there is no snapshot in the directory
+	 */
+	public static CsrGraph map(Path directory) throws IOException {
+		Path manifest = directory.resolve(MANIFEST), snapshot = directory;	// files used to be written in the directory itself
+		if (Files.exists(manifest))
+			snapshot = directory.resolve(new String(Files.readAllBytes(manifest), StandardCharsets.UTF_8).trim());
+		Path nodes = snapshot.resolve(NODES), edges = snapshot.resolve(EDGES);
+		if (!Files.exists(nodes) || !Files.exists(edges)) {
+			if (snapshot != directory)
+				throw new IOException("Missing files of the current snapshot in "+snapshot);
+			return null;
+		}
+		MappedFile nodeFile = new MappedFile(nodes), edgeFile = new MappedFile(edges);
+		long stamp = checkHeader(nodes, nodeFile);
+		if (checkHeader(edges, edgeFile) != stamp)
+			throw new IOException("Node table and edge file come from different snapshots in "+snapshot);
+		int n = nodeFile.getInt(16), m = edgeFile.getInt(20);
+		CsrGraph graph = new CsrGraph(n, m, nodeFile, edgeFile);
+		nodeFile.require(graph.nameBytes);
+		nodeFile.require(graph.nameBytes + nodeFile.getInt(NODES_HEADER + (long) n * Integer.BYTES));
+		edgeFile.require(graph.mappedSources + (long) m * Integer.BYTES);
+		return graph;
+	}
+
+	private static long checkHeader(Path path, MappedFile file) throws IOException {
+		if (file.size < NODES_HEADER || file.getInt(0) != MAGIC)
+			throw new IOException("Not a graph snapshot: "+path);
+		if (file.getInt(4) != VERSION)
+			throw new IOException("Unsupported snapshot version "+file.getInt(4)+": "+path);
+		return file.getLong(8);
+	}
+
+	/* A single mapping can't exceed 2 GB, so files are mapped in regions
+	 * that overlap by a long, which keeps ints and longs from straddling
+	 * two of them. Mappings stay valid once the channel is closed.
+	 */
+	private static class MappedFile {
+		private static final int REGION_BITS = 30;	// 1 GB
+		private static final long REGION_SIZE = 1L << REGION_BITS, REGION_MASK = REGION_SIZE - 1;
+
+		private final ByteBuffer[] regions;
+		private final long size;
+
+		private MappedFile(Path path) throws IOException {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				size = channel.size();
+				regions = new ByteBuffer[(int) Math.max(1, (size + REGION_MASK) >>> REGION_BITS)];
+				for (int i=0; i<regions.length; i++) {
+					long start = (long) i << REGION_BITS;
+					regions[i] = channel.map(MapMode.READ_ONLY, start, Math.min(size - start, REGION_SIZE + Long.BYTES))
+						.order(ByteOrder.LITTLE_ENDIAN);
+				}
+			}
+		}
+
+		private void require(long end) throws IOException {
+			if (end > size)
+				throw new IOException("Truncated graph snapshot");
+		}
+
+		private int getInt(long position) {
+			return regions[(int) (position >>> REGION_BITS)].getInt((int) (position & REGION_MASK));
+		}
+
+		private long getLong(long position) {
+			return regions[(int) (position >>> REGION_BITS)].getLong((int) (position & REGION_MASK));
+		}
+
+		private void get(long position, byte[] bytes) {
+			for (int i=0, length; i<bytes.length; i+=length, position+=length) {
+				int offset = (int) (position & REGION_MASK);
+				length = (int) Math.min(bytes.length - i, REGION_SIZE - offset);
+				regions[(int) (position >>> REGION_BITS)].get(offset, bytes, i, length);
+			}
+		}
+	}
+
+	/* Accessors */
+
+	public int size() {
+		return size;
+	}
+
+	public int edges() {
+		return sources != null ? sources.length : mappedEdges;
+	}
+
+	public String name(int node) {
+		if (names != null)
+			return names[node];
+		long offset = NODES_HEADER + (long) node * Integer.BYTES;
+		int start = nodeFile.getInt(offset), end = nodeFile.getInt(offset + Integer.BYTES);
+		byte[] bytes = new byte[end - start];
+		nodeFile.get(nameBytes + start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public int inStart(int node) {
+		return offsets != null ? offsets[node] : edgeFile.getInt(mappedOffsets + (long) node * Integer.BYTES);
+	}
+
+	public int inEnd(int node) {
+		return inStart(node + 1);
+	}
+
+	public int source(int edge) {
+		return sources != null ? sources[edge] : edgeFile.getInt(mappedSources + (long) edge * Integer.BYTES);
+	}
+
+	public int outDegree(int node) {
+		return outDegrees != null ? outDegrees[node] : edgeFile.getInt(mappedOutDegrees + (long) node * Integer.BYTES);
+	}
+
+	public boolean isDangling(int node) {
+		return outDegree(node) == 0;
+	}
+}
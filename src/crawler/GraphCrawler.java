@@ -0,0 +1,108 @@
+package crawler;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import crawler.model.Context;
+import crawler.model.Context.Strategy;
+import crawler.model.Crawler;
+
+/**
+ * Crawls a {@link SyntheticGraph} in memory, so that the crawler engine
+ * can be load-tested without a filesystem, a browser or a network. Every
+ * expansion can be delayed to simulate fetching: each node gets a fixed
+ * latency between the min and max given, so runs stay reproducible.
+ */
+public class GraphCrawler extends Crawler<Long> {
+	private final SyntheticGraph graph;
+	private long minLatency, maxLatency;	// ns
+
+	public GraphCrawler(Context<Long> context, int maxDepth, SyntheticGraph graph) {
+		super(context, maxDepth);
+		this.graph = graph;
+	}
+
+	@Override
+	protected List<Long> crawlFrontier(Long node) {
+		if (maxLatency > 0)
+			await(latencyOf(node));
+		return graph.neighbours(node);
+	}
+
+	private long latencyOf(long node) {
+		if (maxLatency == minLatency)
+			return minLatency;
+		return minLatency + graph.randomOf(~node).nextLong(maxLatency - minLatency + 1);
+	}
+
+	/* Parks rather than spins, like a worker waiting on I/O would */
+	private static void await(long nanos) {
+		long deadline = System.nanoTime() + nanos;
+		for (long left = nanos; left > 0; left = deadline - System.nanoTime())
+			LockSupport.parkNanos(left);
+	}
+
+	/* Latency injection */
+
+	public GraphCrawler setLatency(long min, long max, TimeUnit unit) {
+		if (min < 0 || max < min)
+			throw new IllegalArgumentException("Latency bounds must satisfy 0 <= min <= max");
+		minLatency = unit.toNanos(min);
+		maxLatency = unit.toNanos(max);
+		return this;
+	}
+
+	public GraphCrawler setLatency(long latency, TimeUnit unit) {
+		return setLatency(latency, latency, unit);
+	}
+
+	public long getMinLatency() {
+		return minLatency;
+	}
+
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	public SyntheticGraph getGraph() {
+		return graph;
+	}
+
+	public static class Builder extends Crawler.Builder<Long, GraphCrawler> {
+		private SyntheticGraph graph;
+		private long minLatency, maxLatency;	// ns
+
+		public Builder(Strategy strategy) {
+			super(strategy);
+		}
+
+		public Builder() {
+			this(Strategy.BREADTH_FIRST);
+		}
+
+		/* Crawls start from pushed nodes, every node is reachable from 0 */
+		public Builder setGraph(SyntheticGraph graph) {
+			this.graph = graph;
+			return this;
+		}
+
+		public Builder setLatency(long min, long max, TimeUnit unit) {
+			minLatency = unit.toNanos(min);
+			maxLatency = unit.toNanos(max);
+			return this;
+		}
+
+		public Builder setLatency(long latency, TimeUnit unit) {
+			return setLatency(latency, latency, unit);
+		}
+
+		@Override
+		public GraphCrawler build() {
+			if (graph == null)
+				throw new IllegalStateException("No graph to crawl");
+			return new GraphCrawler(getContext(), getMaxDepth(), graph)
+				.setLatency(minLatency, maxLatency, TimeUnit.NANOSECONDS);
+		}
+	}
+}
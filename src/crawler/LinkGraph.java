@@ -0,0 +1,195 @@
+package crawler;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent link graph that interns every URL to a dense int ID the
+ * first time it's seen, and records edges in primitive growable arrays
+ * (one per source page) instead of sets of strings. Ranking works on
+ * immutable {@link CsrGraph} snapshots taken through {@link #snapshot()}.
+ */
+public class LinkGraph {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final Map<String, Integer> ids;
+	private final Object lock;
+	private volatile String[] names;
+	private volatile Node[] nodes;
+	private volatile int size;
+	private final LongAdder edges;
+
+	public LinkGraph() {
+		ids = new ConcurrentHashMap<>();
+		lock = new Object();
+		names = new String[INITIAL_CAPACITY];
+		nodes = new Node[INITIAL_CAPACITY];
+		edges = new LongAdder();
+	}
+
+	/**
+	 * @return the ID of the URL, registering it if it's new
+	 */
+	public int intern(String url) {
+		Integer id = ids.get(url);
+		if (id != null)
+			return id;
+		synchronized (lock) {
+			id = ids.get(url);
+			if (id != null)
+				return id;
+			int next = size;
+			if (next == nodes.length) {
+				names = Arrays.copyOf(names, next * 2);
+				nodes = Arrays.copyOf(nodes, next * 2);
+			}
+			names[next] = url;
+			nodes[next] = new Node();
+			size = next + 1;
+			ids.put(url, next);	// published last, so arrays are visible to whoever gets the ID
+			return next;
+		}
+	}
+
+	/** @return the ID of the URL, -1 if it was never seen */
+	public int id(String url) {
+		Integer id = ids.get(url);
+		return id == null ? -1 : id;
+	}
+
+	public String name(int id) {
+		return names[id];
+	}
+
+	/**
+	 * Records a link, duplicate links are ignored.
+	 * @return true if the link is new
+	 */
+	public boolean link(String from, String to) {
+		int source = intern(from), target = intern(to);
+		if (!nodes[source].add(target))
+			return false;
+		Node.IN_DEGREE.incrementAndGet(nodes[target]);
+		edges.increment();
+		return true;
+	}
+
+	public int inDegree(String url) {
+		int id = id(url);
+		return id < 0 ? 0 : nodes[id].inDegree;
+	}
+
+	public int outDegree(String url) {
+		int id = id(url);
+		return id < 0 ? 0 : nodes[id].size();
+	}
+
+	/** Number of distinct URLs */
+	public int size() {
+		return size;
+	}
+
+	/** Number of distinct links */
+	public long edges() {
+		return edges.sum();
+	}
+
+	/**
+	 * Copies the graph as it is now, links still being added can be
+	 * either in or out of the snapshot.
+	 */
+	public CsrGraph snapshot() {
+		int n = size;
+		Node[] nodes = this.nodes;
+		String[] names = Arrays.copyOf(this.names, n);
+		int[] from = new int[16], to = new int[16];
+		int m = 0;
+		for (int source=0; source<n; source++) {
+			int[] targets = nodes[source].targets();
+			if (m + targets.length > from.length) {
+				int capacity = Math.max(from.length * 2, m + targets.length);
+				from = Arrays.copyOf(from, capacity);
+				to = Arrays.copyOf(to, capacity);
+			}
+			for (int target : targets)
+				if (target < n) {	// registered after the snapshot started
+					from[m] = source;
+					to[m++] = target;
+				}
+		}
+		return CsrGraph.of(names, from, to, m);
+	}
+
+	/* Out-links of a page, small lists are scanned for duplicates and
+	 * larger ones get an open-addressing index of their targets.
+	 */
+	private static class Node {
+		static final AtomicIntegerFieldUpdater<Node> IN_DEGREE = AtomicIntegerFieldUpdater.newUpdater(Node.class, "inDegree");
+		static final int SCAN_LIMIT = 16;
+
+		volatile int inDegree;
+		private int[] targets = new int[4];
+		private int[] index;	// target+1 per slot, 0 marks empty slots
+		private int count;
+
+		synchronized boolean add(int target) {
+			if (contains(target))
+				return false;
+			if (count == targets.length)
+				targets = Arrays.copyOf(targets, count * 2);
+			targets[count++] = target;
+			if (index != null || count > SCAN_LIMIT)
+				index(target);
+			return true;
+		}
+
+		private boolean contains(int target) {
+			if (index == null) {
+				for (int i=0; i<count; i++)
+					if (targets[i] == target)
+						return true;
+				return false;
+			}
+			int mask = index.length - 1;
+			for (int slot = mix(target) & mask;; slot = (slot + 1) & mask) {
+				if (index[slot] == 0)
+					return false;
+				if (index[slot] == target + 1)
+					return true;
+			}
+		}
+
+		private void index(int target) {
+			if (index == null || count * 2 > index.length) {
+				index = new int[Integer.highestOneBit(count * 4 - 1) * 2];
+				for (int i=0; i<count; i++)
+					insert(targets[i]);
+			} else
+				insert(target);
+		}
+
+		private void insert(int target) {
+			int mask = index.length - 1;
+			int slot = mix(target) & mask;
+			while (index[slot] != 0)
+				slot = (slot + 1) & mask;
+			index[slot] = target + 1;
+		}
+
+		private static int mix(int value) {
+			int h = value * 0x9e3779b9;
+			return h ^ (h >>> 16);
+		}
+
+		synchronized int size() {
+			return count;
+		}
+
+		synchronized int[] targets() {
+			return Arrays.copyOf(targets, count);
+		}
+	}
+}
@@ -31,7 +31,7 @@ public class MultiFolderCrawler extends MultiCrawler<String> {
 
 		@Override
 		public MultiFolderCrawler build() {
-			return new MultiFolderCrawler(getContext(), getMaxDepth(), getMaxThreads());
+			return configure(new MultiFolderCrawler(getContext(), getMaxDepth(), getMaxThreads()));
 		}
 	}
 }
@@ -0,0 +1,93 @@
+package crawler;
+
+import java.util.concurrent.TimeUnit;
+
+import crawler.model.Context;
+import crawler.model.Context.Strategy;
+import crawler.model.Crawler;
+import crawler.model.MultiCrawler;
+
+/* Workers share the graph and latency settings, see GraphCrawler */
+public class MultiGraphCrawler extends MultiCrawler<Long> {
+	private final SyntheticGraph graph;
+	private long minLatency, maxLatency;	// ns
+
+	public MultiGraphCrawler(Context<Long> context, int maxDepth, int maxThreads, SyntheticGraph graph) {
+		super(context, maxDepth, maxThreads);
+		this.graph = graph;
+	}
+
+	public MultiGraphCrawler(Context<Long> context, int maxDepth, SyntheticGraph graph) {
+		this(context, maxDepth, DEFAULT_MAX_THREADS, graph);
+	}
+
+	@Override
+	protected Crawler<Long> create(Context<Long> context, int maxDepth) {
+		return new GraphCrawler(context, maxDepth, graph)
+			.setLatency(minLatency, maxLatency, TimeUnit.NANOSECONDS);
+	}
+
+	/* Latency injection, needs to be set before crawling */
+
+	public MultiGraphCrawler setLatency(long min, long max, TimeUnit unit) {
+		if (min < 0 || max < min)
+			throw new IllegalArgumentException("Latency bounds must satisfy 0 <= min <= max");
+		minLatency = unit.toNanos(min);
+		maxLatency = unit.toNanos(max);
+		return this;
+	}
+
+	public MultiGraphCrawler setLatency(long latency, TimeUnit unit) {
+		return setLatency(latency, latency, unit);
+	}
+
+	public long getMinLatency() {
+		return minLatency;
+	}
+
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	public SyntheticGraph getGraph() {
+		return graph;
+	}
+
+	public static class Builder extends MultiCrawler.Builder<Long, MultiGraphCrawler> {
+		private SyntheticGraph graph;
+		private long minLatency, maxLatency;	// ns
+
+		public Builder(Strategy strategy) {
+			super(strategy);
+		}
+
+		public Builder() {
+			this(Strategy.BREADTH_FIRST);
+		}
+
+		/* Crawls start from pushed nodes, every node is reachable from 0 */
+		public Builder setGraph(SyntheticGraph graph) {
+			this.graph = graph;
+			return this;
+		}
+
+		public Builder setLatency(long min, long max, TimeUnit unit) {
+			minLatency = unit.toNanos(min);
+			maxLatency = unit.toNanos(max);
+			return this;
+		}
+
+		public Builder setLatency(long latency, TimeUnit unit) {
+			return setLatency(latency, latency, unit);
+		}
+
+		@Override
+		public MultiGraphCrawler build() {
+			if (graph == null)
+				throw new IllegalStateException("No graph to crawl");
+			MultiGraphCrawler crawler = new MultiGraphCrawler(getContext(), getMaxDepth(), getMaxThreads(), graph);
+			crawler.setLatency(minLatency, maxLatency, TimeUnit.NANOSECONDS);
+			return configure(crawler);
+		}
+	}
+}
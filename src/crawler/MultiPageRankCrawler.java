@@ -1,5 +1,8 @@
 package crawler;
 
+import java.nio.file.Path;
+import java.util.function.ToDoubleFunction;
+
 import ads.common.Utils.Time;
 import browser.common.Browser;
 import browser.common.Configurators;
@@ -57,6 +60,10 @@ public class MultiPageRankCrawler extends MultiWebCrawler {
 		logln("> Page ranks per URL :");
 		pageRank.optimize(optimisations)
 			.forEach((key, val) -> logln("%s -> %f", key.toString(), val));
+		logln("Optimised page ranks in %s", pageRank.getLastReport());
+		pageRank.close();	// stops background refreshes
+		if (pageRank.getCheckpoints() != null && pageRank.checkpoint())
+			logln("Saved link graph to %s", pageRank.getCheckpoints());
 		duration = System.currentTimeMillis() - duration;
 		logln("Finished after %s%n", Time.fromMillis(duration));
 		close();
@@ -65,11 +72,20 @@ public class MultiPageRankCrawler extends MultiWebCrawler {
 	public static class Builder extends MultiWebCrawler.Builder<MultiPageRankCrawler> {
 		private int optimisations;
 		private PageRank pageRank;
+		private ToDoubleFunction<String> scorer;
+		// Applied to the PageRank when building, unset when null or 0
+		private Double tolerance;
+		private PageRank.Method method;
+		private int parallelism;
+		private long refreshInterval;
+		private Path checkpoints;
+		private long checkpointInterval;
 		
 		public Builder(Strategy strategy) {
 			super(strategy);
 			optimisations = PageRankCrawler.DEFAULT_OPTIMISATIONS;
-			pageRank = new PageRank();
+			pageRank = new PageRank()
+				.setParallelism(Runtime.getRuntime().availableProcessors());
 		}
 		
 		public Builder() {
@@ -85,6 +101,51 @@ public class MultiPageRankCrawler extends MultiWebCrawler {
 			return optimisations;
 		}
 		
+		/* Optimisations are only an upper bound when there is a tolerance */
+		public Builder setTolerance(double tolerance) {
+			this.tolerance = tolerance;
+			return this;
+		}
+		
+		public Builder setMethod(PageRank.Method method) {
+			this.method = method;
+			return this;
+		}
+		
+		/* Threads used to optimise page ranks once crawling is done */
+		public Builder setParallelism(int parallelism) {
+			if (parallelism < 1)
+				throw new IllegalArgumentException("Parallelism can only be strict positive integers");
+			this.parallelism = parallelism;
+			return this;
+		}
+		
+		/**
+		 * Keeps ranks up to date while crawling by refreshing them every 
+		 * given number of new links, the final optimisation then starts 
+		 * from the last refresh.
+		 */
+		public Builder setRefreshInterval(long edges) {
+			if (edges < 0)
+				throw new IllegalArgumentException("Refresh interval can only be positive integers");
+			refreshInterval = edges;
+			return this;
+		}
+		
+		/**
+		 * Saves the link graph to the directory every given number of new 
+		 * links and once crawling is done, it can then be reloaded through 
+		 * {@link PageRank#restore(Path)}.
+		 */
+		public Builder setCheckpoints(Path directory, long edges) {
+			if (edges < 0)
+				throw new IllegalArgumentException("Checkpoint interval can only be positive integers");
+			checkpoints = directory;
+			checkpointInterval = edges;
+			return this;
+		}
+		
+		/* Settings of this builder are applied to it when building, whatever the order */
 		public Builder setPageRank(PageRank pageRank) {
 			this.pageRank = pageRank;
 			return this;
@@ -94,14 +155,46 @@ public class MultiPageRankCrawler extends MultiWebCrawler {
 			return pageRank;
 		}
 		
+		/**
+		 * Sets how pages are prioritised when using the BEST_FIRST strategy, 
+		 * defaults to the in-degree of each page in the link graph.
+		 */
+		public Builder setScorer(ToDoubleFunction<String> scorer) {
+			this.scorer = scorer;
+			return this;
+		}
+		
+		public ToDoubleFunction<String> getScorer() {
+			return scorer;
+		}
+		
 		@Override
 		public MultiPageRankCrawler build() {
-			return new MultiPageRankCrawler(
+			PageRank pageRank = applySettings(this.pageRank);
+			if (getContext().getStrategy() == Strategy.BEST_FIRST)
+				getContext().prioritise(scorer == null ? pageRank::inDegree : scorer);
+			return configure(new MultiPageRankCrawler(
 				getContext(),
 				getMaxDepth(),
 				getMaxThreads(),
 				optimisations,
-				pageRank);
+				pageRank));
+		}
+		
+		/* Only what was set explicitly, so that the PageRank keeps its own settings otherwise */
+		private PageRank applySettings(PageRank pageRank) {
+			if (tolerance != null)
+				pageRank.setTolerance(tolerance);
+			if (method != null)
+				pageRank.setMethod(method);
+			if (parallelism > 0)
+				pageRank.setParallelism(parallelism);
+			if (refreshInterval > 0)
+				pageRank.setWarmStart(true)
+					.setRefreshInterval(refreshInterval);
+			if (checkpoints != null)
+				pageRank.setCheckpoints(checkpoints, checkpointInterval);
+			return pageRank;
 		}
 		
 	}
@@ -1,112 +1,677 @@
-package crawler;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import ads.Matrix;
-import ads.common.Maps;
-
-public class PageRank {
-	private final Map<String, Collection<String>> connections;
-	
-	// Used internally
-	private final float d = 0.85f; 			// damping factor
-	private List<String> websites;
-	private Map<String, Integer> cache;		// index cache
-	
-	private Map<String, Double> lastResult;
-	
-	public PageRank() {
-		connections = new ConcurrentHashMap<>();
-	}
-	
-	public Map<String, Collection<String>> connections() {
-		return connections;
-	}
-	
-	public Map<String, Double> getLastResult() {
-		return lastResult;
-	}
-	
-	/**
-	 * Initially all websites have the same page rank (e.g. probability)
-	 * @return the initial page rank column vector
-	 */
-	protected Matrix createInitialProbabilityVector() {
-		int size = connections.size();
-		double[][] vector = new double[size][];
-		for (int i=0; i<size; i++)
-			vector[i] = new double[]{ 1d/size };
-		return new Matrix(vector);
-	}
-	
-	/**
-	 * Square stochastic matrix where each column represents the probability
-	 * of clicking on the URL mapped by the respective row (AKA Markov chain
-	 * transition matrix). 
-	 * @return stochastic matrix of probabilities 
-	 */
-	protected Matrix createTransitionMatrix() {
-		int size = websites.size();
-		double[][] matrix = new double[size][size];
-		Collection<String> adjacent;
-		for (int i=0; i<size; i++) {
-			adjacent = connections.get(websites.get(i));
-			int c = adjacent.size();
-			double probability = 1d/c;
-			for (int j=0; j<size; j++)
-				 matrix[j][i] = adjacent.contains(websites.get(j)) ? probability : 0d;
-		}
-		return new Matrix(matrix);
-	}
-	
-	/** The matrix that models leaving a page at any time */
-	protected Matrix createTeleportationMatrix() {
-		return Matrix.ones(websites.size(), 1);
-	}
-	
-	public Map<String, Double> optimize(int iterations) {
-		websites = new ArrayList<>(connections.keySet());
-		int n = websites.size();
-		if (n == 0)
-			return new HashMap<>();
-		// Cache website indices 
-		cache = new HashMap<>();
-		for (int i=0; i<n; i++)
-			cache.put(websites.get(i), i);
-		// Initialise constructs
-		Matrix R = createInitialProbabilityVector(),	// PR(0)
-				M = createTransitionMatrix(),
-				T = createTeleportationMatrix();
-		// Calculate page ranks vector : PR(i+1) = d . M . PR(i) + (1-d)/n . T 
-		for (int i=0; i<iterations; i++) 
-			R = M.times(d).times(R).plus(T.times((1d-d)/n));
-		// Compile page ranks
-		Map<String, Double> ranks = new HashMap<>();
-		R.forEachVisitIndexed((i,j,val) -> ranks.put(websites.get(i), val));
-		return lastResult = Maps.sortByValue(ranks);
-	}
-
-	public static void main(String[] args) {
-		PageRank pr = new PageRank();
-		// Example from : https://www.youtube.com/watch?v=kSmQbVxqOJc
-		// and : https://www.youtube.com/watch?v=P8Kt6Abq_rM
-		int iterations = 100;
-		String A = "A", B = "B", C = "C", D = "D";
-		pr.connections().put(A, Arrays.asList(C, B));
-		pr.connections().put(B, Arrays.asList(D));
-		pr.connections().put(C, Arrays.asList(A, B, D));
-		pr.connections().put(D, Arrays.asList(C));
-		Map<String, Double> ranks = pr.optimize(iterations);
-		System.out.println(ranks);
-		double sum = 0d;
-		for (double val : ranks.values())
-			sum += val;
-		System.out.println(sum);
-	}
+package crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import ads.common.Maps;
+import crawler.model.Log.Level;
+import crawler.model.Loggeable;
+
+public class PageRank implements Closeable, Loggeable {
+	/* POWER updates every rank from the previous iteration (Jacobi), while
+	 * GAUSS_SEIDEL reuses ranks already updated during the current sweep,
+	 * which usually converges in noticeably fewer sweeps.
+	 */
+	public static enum Method { POWER, GAUSS_SEIDEL }
+	
+	/* Work units (nodes + in-edges) per chunk of the rank vector. Chunks don't 
+	 * depend on the parallelism so that results are the same for any level. */
+	public static final int CHUNK_SIZE = 1 << 14;
+	public static final int DEFAULT_REFRESH_ITERATIONS = 5;
+	
+	private final LinkGraph links;
+	private double tolerance;		// 0 runs the full number of iterations
+	private Method method;
+	private int parallelism;
+	private boolean warmStart;		// starts from the last result instead of a uniform vector
+	private long refreshInterval;	// 0 never refreshes while linking
+	private int refreshIterations;
+	private Path checkpoints;		// null never checkpoints while linking
+	private long checkpointInterval;
+	
+	// Used internally
+	private final float d = 0.85f; 			// damping factor
+	private final AtomicLong nextRefresh, nextCheckpoint;
+	private final AtomicBoolean refreshing, refreshRequested, checkpointing, checkpointRequested;
+	private final AtomicLong generations;	// one per optimisation, by start order
+	private ExecutorService background;		// single daemon thread for refreshes and checkpoints, created on demand
+	private ForkJoinPool pool;				// for parallel POWER iterations, created on demand
+	private long published;					// generation of the last result
+	private long rankedEdges;				// links known to the last optimisation started
+	
+	private volatile Map<String, Double> lastResult;
+	private volatile Report lastReport;
+	
+	public PageRank() {
+		links = new LinkGraph();
+		method = Method.POWER;
+		parallelism = 1;
+		refreshIterations = DEFAULT_REFRESH_ITERATIONS;
+		nextRefresh = new AtomicLong();
+		refreshing = new AtomicBoolean();
+		refreshRequested = new AtomicBoolean();
+		generations = new AtomicLong();
+		nextCheckpoint = new AtomicLong();
+		checkpointing = new AtomicBoolean();
+		checkpointRequested = new AtomicBoolean();
+	}
+	
+	/* Settings */
+	
+	/**
+	 * Stops optimising as soon as the L1 norm between two successive
+	 * rank vectors drops below the tolerance.
+	 */
+	public PageRank setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+		return this;
+	}
+	
+	public double getTolerance() {
+		return tolerance;
+	}
+	
+	public PageRank setMethod(Method method) {
+		this.method = method;
+		return this;
+	}
+	
+	public Method getMethod() {
+		return method;
+	}
+	
+	/**
+	 * Number of threads used by POWER iterations, Gauss-Seidel sweeps
+	 * being inherently sequential they always run on the calling thread.
+	 */
+	public PageRank setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism can only be strict positive integers");
+		this.parallelism = parallelism;
+		return this;
+	}
+	
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * Starts optimising from the last result, pages that weren't ranked 
+	 * yet getting 1/n. Since ranks barely move between two snapshots of 
+	 * a growing graph, only a few iterations are needed to converge again.
+	 */
+	public PageRank setWarmStart(boolean warmStart) {
+		this.warmStart = warmStart;
+		return this;
+	}
+	
+	public boolean isWarmStart() {
+		return warmStart;
+	}
+	
+	/**
+	 * Refreshes ranks every time that many new links were recorded, so 
+	 * they can be queried through {@link #rank(String)} during a crawl. 
+	 * Refreshes are warm started and run on a background thread, so the 
+	 * thread whose link triggered one doesn't wait for it. Requests made 
+	 * while one is running are coalesced into a single next refresh.
+	 * @param edges - 0 disables refreshes
+	 */
+	public PageRank setRefreshInterval(long edges) {
+		if (edges < 0)
+			throw new IllegalArgumentException("Refresh interval can only be positive integers");
+		refreshInterval = edges;
+		nextRefresh.set(links.edges() + edges);
+		return this;
+	}
+	
+	public long getRefreshInterval() {
+		return refreshInterval;
+	}
+	
+	/* Upper bound on iterations per refresh, the tolerance still applies */
+	public PageRank setRefreshIterations(int iterations) {
+		refreshIterations = iterations;
+		return this;
+	}
+	
+	public int getRefreshIterations() {
+		return refreshIterations;
+	}
+	
+	/**
+	 * Writes the link graph to the directory every time that many new
+	 * links were recorded, on the background thread of refreshes. Write
+	 * failures are logged there rather than thrown at the linking thread.
+	 * See {@link #checkpoint()} to write one on the calling thread.
+	 * @param edges - 0 only checkpoints when asked to
+	 */
+	public PageRank setCheckpoints(Path directory, long edges) {
+		if (edges < 0)
+			throw new IllegalArgumentException("Checkpoint interval can only be positive integers");
+		checkpoints = directory;
+		checkpointInterval = edges;
+		nextCheckpoint.set(links.edges() + edges);
+		return this;
+	}
+	
+	public Path getCheckpoints() {
+		return checkpoints;
+	}
+	
+	public long getCheckpointInterval() {
+		return checkpointInterval;
+	}
+	
+	public LinkGraph links() {
+		return links;
+	}
+	
+	/**
+	 * Records a link while keeping track of in-degrees, duplicate links 
+	 * are ignored.
+	 * @return true if the link is new
+	 */
+	public boolean link(String from, String to) {
+		boolean added = links.link(from, to);
+		if (added) {
+			long count = links.edges();
+			if (refreshInterval > 0 && count >= nextRefresh.get())
+				requestRefresh();
+			if (checkpoints != null && checkpointInterval > 0 && count >= nextCheckpoint.get())
+				requestCheckpoint();
+		}
+		return added;
+	}
+	
+	/* At most one refresh runs and one more waits, however many links are recorded meanwhile */
+	private void requestRefresh() {
+		nextRefresh.set(links.edges() + refreshInterval);
+		if (refreshRequested.getAndSet(true))
+			return;
+		try {
+			background().execute(() -> {
+				refreshRequested.set(false);
+				refresh();
+			});
+		} catch (RejectedExecutionException e) {
+			refreshRequested.set(false);	// closed meanwhile
+		}
+	}
+	
+	/* Same as refreshes, at most one checkpoint is written and one more waits */
+	private void requestCheckpoint() {
+		nextCheckpoint.set(links.edges() + checkpointInterval);
+		if (checkpointRequested.getAndSet(true))
+			return;
+		try {
+			background().execute(() -> {
+				checkpointRequested.set(false);
+				try {
+					writeCheckpoint();
+				} catch (IOException e) {
+					if (Thread.currentThread().isInterrupted())
+						logln(Level.DEBUG, "Checkpoint to %s stopped by closing", checkpoints);
+					else
+						logln(Level.ERROR, "Failed to checkpoint to %s: %s", checkpoints, e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			checkpointRequested.set(false);	// closed meanwhile
+		}
+	}
+	
+	private synchronized ExecutorService background() {
+		if (background == null)
+			background = Executors.newSingleThreadExecutor(task -> {
+				Thread thread = new Thread(task, "PageRank background");
+				thread.setDaemon(true);
+				return thread;
+			});
+		return background;
+	}
+	
+	/* Shared by every optimisation, a pool replaced by another parallelism times its idle threads out */
+	private synchronized ForkJoinPool pool() {
+		if (pool == null || pool.getParallelism() != parallelism)
+			pool = new ForkJoinPool(parallelism);
+		return pool;
+	}
+	
+	/**
+	 * Stops background refreshes and checkpoints: queued ones are dropped 
+	 * and the one in progress is waited for, then releases the threads of 
+	 * parallel iterations. Recording links or optimising afterwards starts them 
+	 * again, so closing an instance that is still shared is harmless, 
+	 * as long as no other thread is optimising meanwhile.
+	 */
+	@Override
+	public void close() {
+		ExecutorService background;
+		synchronized (this) {
+			background = this.background;
+			this.background = null;
+		}
+		if (background != null) {
+			background.shutdownNow();
+			try {
+				background.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			refreshRequested.set(false);
+			checkpointRequested.set(false);
+		}
+		ForkJoinPool pool;
+		synchronized (this) {
+			pool = this.pool;
+			this.pool = null;
+		}
+		if (pool != null)
+			pool.shutdown();
+	}
+	
+	/**
+	 * Runs a few warm-started iterations over the current link graph on 
+	 * the calling thread, unless another thread is already doing so.
+	 * @return true if ranks were refreshed
+	 */
+	public boolean refresh() {
+		if (!refreshing.compareAndSet(false, true))
+			return false;
+		try {
+			synchronized (this) {
+				if (links.edges() <= rankedEdges)
+					return false;	// nothing new since the last one, e.g. a final optimisation
+			}
+			nextRefresh.set(links.edges() + refreshInterval);
+			optimize(tolerance, refreshIterations, true);
+			return true;
+		} finally {
+			refreshing.set(false);
+		}
+	}
+	
+	/**
+	 * Writes a snapshot of the link graph to the checkpoint directory on 
+	 * the calling thread (e.g. once crawling is done), unless another 
+	 * thread is already doing so.
+	 * @return true if a checkpoint was written
+	 */
+	public boolean checkpoint() {
+		if (checkpoints == null)
+			throw new IllegalStateException("No checkpoint directory was set");
+		try {
+			return writeCheckpoint();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private boolean writeCheckpoint() throws IOException {
+		if (!checkpointing.compareAndSet(false, true))
+			return false;
+		try {
+			nextCheckpoint.set(links.edges() + checkpointInterval);
+			links.snapshot().write(checkpoints);
+			return true;
+		} finally {
+			checkpointing.set(false);
+		}
+	}
+	
+	/**
+	 * Adds back the links of a snapshot written by a checkpoint, so that
+	 * a crawl can carry on with the graph it had.
+	 * @return false if there is no snapshot in the directory
+	 */
+	public boolean restore(Path directory) throws IOException {
+		CsrGraph graph = CsrGraph.map(directory);
+		if (graph == null)
+			return false;
+		String[] names = new String[graph.size()];
+		for (int v=0; v<names.length; v++)
+			names[v] = graph.name(v);
+		for (int v=0; v<names.length; v++)
+			for (int e=graph.inStart(v), end=graph.inEnd(v); e<end; e++)
+				links.link(names[graph.source(e)], names[v]);
+		return true;
+	}
+	
+	/** Number of distinct links recorded so far */
+	public long edges() {
+		return links.edges();
+	}
+	
+	/* Scores that can be used to prioritise a best-first crawl */
+	
+	/** Number of distinct pages linking to the URL (only counts links added through PageRank::link) */
+	public double inDegree(String url) {
+		return links.inDegree(url);
+	}
+	
+	/** 
+	 * Page rank of the URL in the last result (or refresh), 0 if it 
+	 * wasn't ranked yet.
+	 */
+	public double rank(String url) {
+		Map<String, Double> ranks = lastResult;
+		return ranks == null ? 0d : ranks.getOrDefault(url, 0d);
+	}
+	
+	public Map<String, Double> getLastResult() {
+		return lastResult;
+	}
+	
+	public Report getLastReport() {
+		return lastReport;
+	}
+	
+	public Map<String, Double> optimize(int iterations) {
+		return optimize(tolerance, iterations);
+	}
+	
+	/**
+	 * Optimises until the L1 residual drops below the tolerance, or 
+	 * after maxIterations otherwise. Convergence details are kept in 
+	 * the last report.
+	 */
+	public Map<String, Double> optimize(double tolerance, int maxIterations) {
+		return optimize(tolerance, maxIterations, warmStart);
+	}
+	
+	protected Map<String, Double> optimize(double tolerance, int maxIterations, boolean warm) {
+		long edges = links.edges();	// the snapshot holds at least those
+		synchronized (this) {
+			rankedEdges = Math.max(rankedEdges, edges);
+		}
+		return optimize(links.snapshot(), tolerance, maxIterations, warm);
+	}
+	
+	/**
+	 * Ranks any snapshot instead of the recorded links, such as one mapped
+	 * from disk through {@link CsrGraph#map(Path)}.
+	 */
+	public Map<String, Double> optimize(CsrGraph graph, double tolerance, int maxIterations) {
+		return optimize(graph, tolerance, maxIterations, warmStart);
+	}
+	
+	protected Map<String, Double> optimize(CsrGraph graph, double tolerance, int maxIterations, boolean warm) {
+		long generation = generations.incrementAndGet();
+		int n = graph.size();
+		Report report = new Report(maxIterations);
+		if (n == 0) {
+			Map<String, Double> empty = new HashMap<>();
+			publish(generation, report, empty);
+			return empty;
+		}
+		double[] ranks = initialRanks(graph, warm ? lastResult : null), 
+			next = new double[n], contributions = new double[n];
+		int[] chunks = partition(graph);
+		ForkJoinPool pool = parallelism > 1 && method == Method.POWER ? pool() : null;
+		for (int i=0; i<maxIterations; i++) {
+			long start = System.nanoTime();
+			double residual;
+			if (method == Method.GAUSS_SEIDEL)
+				residual = sweep(graph, ranks, contributions);
+			else {
+				residual = iterate(graph, chunks, ranks, contributions, next, pool);
+				double[] swap = ranks;
+				ranks = next;
+				next = swap;
+			}
+			report.record(residual, System.nanoTime() - start);
+			if (residual < tolerance)
+				break;
+		}
+		Map<String, Double> result = compile(graph, ranks);
+		publish(generation, report, result);
+		return result;
+	}
+	
+	/* Optimisations started later win, e.g. over a refresh that was still running */
+	private synchronized void publish(long generation, Report report, Map<String, Double> result) {
+		if (generation < published)
+			return;
+		published = generation;
+		lastReport = report;
+		lastResult = result;
+	}
+	
+	/**
+	 * Initially all websites have the same page rank (e.g. probability),
+	 * unless previous ranks are given. In which case those are reused and
+	 * new pages get 1/n, before normalising so that ranks still sum to 1.
+	 */
+	protected double[] initialRanks(CsrGraph graph, Map<String, Double> previous) {
+		int n = graph.size();
+		double[] ranks = new double[n];
+		Arrays.fill(ranks, 1d/n);
+		if (previous == null || previous.isEmpty())
+			return ranks;
+		double total = 0d;
+		for (int v=0; v<n; v++) {
+			Double rank = previous.get(graph.name(v));
+			if (rank != null)
+				ranks[v] = rank;
+			total += ranks[v];
+		}
+		for (int v=0; v<n; v++)
+			ranks[v] /= total;
+		return ranks;
+	}
+	
+	/**
+	 * Splits nodes into contiguous chunks holding roughly the same amount
+	 * of work (e.g. nodes + in-edges).
+	 * @return chunk boundaries, chunk c being [chunks[c], chunks[c+1])
+	 */
+	protected int[] partition(CsrGraph graph) {
+		int n = graph.size();
+		int[] bounds = new int[n + 1];
+		int count = 0;
+		long work = 0;
+		for (int v=0; v<n; v++) {
+			if (work >= CHUNK_SIZE) {
+				bounds[count++] = v;
+				work = 0;
+			}
+			if (v == 0)
+				bounds[count++] = 0;
+			work += 1 + graph.inEnd(v) - graph.inStart(v);
+		}
+		bounds[count++] = n;
+		return Arrays.copyOf(bounds, count);
+	}
+	
+	/**
+	 * One power iteration over the sparse graph, pulling rank through
+	 * in-edges: PR(i+1)[v] = (1-d)/n + d . (sum of PR(i)[u]/out(u) for
+	 * u -> v + dangling/n), where dangling is the rank held by pages
+	 * without out-links (spread evenly, as if they linked everywhere).
+	 * <p>
+	 * Chunks only write their own slice of the vectors and their own
+	 * partial sum, which are then added up in chunk order, so results
+	 * are deterministic whether a pool is used or not.
+	 * @return the L1 norm of PR(i+1) - PR(i)
+	 */
+	protected double iterate(CsrGraph graph, int[] chunks, double[] ranks, double[] contributions, double[] next, ForkJoinPool pool) {
+		int n = graph.size(), count = chunks.length - 1;
+		double[] partials = new double[count];
+		forEachChunk(pool, count, c -> partials[c] = contribute(graph, ranks, contributions, chunks[c], chunks[c+1]));
+		double base = (1d-d)/n + d*sum(partials)/n;
+		forEachChunk(pool, count, c -> partials[c] = pull(graph, ranks, contributions, next, base, chunks[c], chunks[c+1]));
+		return sum(partials);
+	}
+	
+	private static void forEachChunk(ForkJoinPool pool, int count, IntConsumer action) {
+		if (pool == null)
+			for (int c=0; c<count; c++)
+				action.accept(c);
+		else	// parallel streams run in the pool they're submitted from
+			pool.submit(() -> IntStream.range(0, count).parallel().forEach(action)).join();
+	}
+	
+	private static double sum(double[] values) {
+		double sum = 0d;
+		for (double value : values)
+			sum += value;
+		return sum;
+	}
+	
+	/**
+	 * Computes what each node of [from, to) gives to each of its out-links.
+	 * @return the rank held by dangling nodes of the range
+	 */
+	private double contribute(CsrGraph graph, double[] ranks, double[] contributions, int from, int to) {
+		double dangling = 0d;
+		for (int u=from; u<to; u++) {
+			if (graph.isDangling(u)) {
+				dangling += ranks[u];
+				contributions[u] = 0d;
+			} else
+				contributions[u] = ranks[u] / graph.outDegree(u);
+		}
+		return dangling;
+	}
+	
+	/**
+	 * Pulls the new ranks of nodes in [from, to) through their in-edges.
+	 * @return the L1 residual of the range
+	 */
+	private double pull(CsrGraph graph, double[] ranks, double[] contributions, double[] next, double base, int from, int to) {
+		double residual = 0d;
+		for (int v=from; v<to; v++) {
+			double sum = 0d;
+			for (int e=graph.inStart(v), end=graph.inEnd(v); e<end; e++)
+				sum += contributions[graph.source(e)];
+			next[v] = base + d*sum;
+			residual += Math.abs(next[v] - ranks[v]);
+		}
+		return residual;
+	}
+	
+	/**
+	 * One Gauss-Seidel sweep, updating ranks in place so that nodes 
+	 * later in the sweep already pull the new ranks of earlier ones.
+	 * The dangling mass is kept up to date as well, and the vector is 
+	 * renormalised at the end since in-place updates don't preserve it.
+	 * @return the L1 norm of the changes made during the sweep
+	 */
+	protected double sweep(CsrGraph graph, double[] ranks, double[] contributions) {
+		int n = graph.size();
+		double dangling = contribute(graph, ranks, contributions, 0, n);
+		double residual = 0d, total = 0d;
+		for (int v=0; v<n; v++) {
+			double sum = 0d;
+			for (int e=graph.inStart(v), end=graph.inEnd(v); e<end; e++)
+				sum += contributions[graph.source(e)];
+			double updated = (1d-d)/n + d*(sum + dangling/n);
+			residual += Math.abs(updated - ranks[v]);
+			if (graph.isDangling(v))
+				dangling += updated - ranks[v];
+			else
+				contributions[v] = updated / graph.outDegree(v);
+			ranks[v] = updated;
+			total += updated;
+		}
+		for (int v=0; v<n; v++)
+			ranks[v] /= total;
+		return residual;
+	}
+	
+	protected Map<String, Double> compile(CsrGraph graph, double[] ranks) {
+		Map<String, Double> compiled = new HashMap<>();
+		for (int v=0; v<graph.size(); v++)
+			compiled.put(graph.name(v), ranks[v]);
+		return Maps.sortByValue(compiled);
+	}
+
+	/* Convergence details of an optimisation */
+	
+	public static class Report {
+		private final double[] residuals;
+		private final long[] nanos;
+		private int iterations;
+		
+		private Report(int maxIterations) {
+			residuals = new double[Math.max(0, maxIterations)];
+			nanos = new long[residuals.length];
+		}
+		
+		private void record(double residual, long duration) {
+			residuals[iterations] = residual;
+			nanos[iterations++] = duration;
+		}
+		
+		public int getIterations() {
+			return iterations;
+		}
+		
+		/** L1 residual after each iteration */
+		public double[] getResiduals() {
+			return Arrays.copyOf(residuals, iterations);
+		}
+		
+		/** Duration of each iteration in nanoseconds */
+		public long[] getNanos() {
+			return Arrays.copyOf(nanos, iterations);
+		}
+		
+		public double getResidual() {
+			return iterations == 0 ? 0d : residuals[iterations - 1];
+		}
+		
+		public long getTotalNanos() {
+			long total = 0;
+			for (int i=0; i<iterations; i++)
+				total += nanos[i];
+			return total;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%d iterations, residual %.3e, %.3f ms", 
+				iterations, getResidual(), getTotalNanos() / 1e6);
+		}
+	}
+
+	public static void main(String[] args) {
+		PageRank pr = new PageRank();
+		// Example from : https://www.youtube.com/watch?v=kSmQbVxqOJc
+		// and : https://www.youtube.com/watch?v=P8Kt6Abq_rM
+		int iterations = 100;
+		String A = "A", B = "B", C = "C", D = "D";
+		for (String to : Arrays.asList(C, B))
+			pr.link(A, to);
+		pr.link(B, D);
+		for (String to : Arrays.asList(A, B, D))
+			pr.link(C, to);
+		pr.link(D, C);
+		Map<String, Double> ranks = pr.optimize(iterations);
+		System.out.println(ranks);
+		System.out.println(pr.getLastReport());
+		pr.setMethod(Method.GAUSS_SEIDEL)
+			.optimize(1e-10, iterations);
+		System.out.println(pr.getLastResult());
+		System.out.println(pr.getLastReport());
+		double sum = 0d;
+		for (double val : ranks.values())
+			sum += val;
+		System.out.println(sum);
+	}
 }
\ No newline at end of file
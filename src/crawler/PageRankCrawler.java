@@ -1,9 +1,8 @@
 package crawler;
 
-import java.util.Collection;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.ToDoubleFunction;
 
 import ads.common.Utils.Time;
 import browser.common.Browser;
@@ -37,14 +36,9 @@ public class PageRankCrawler extends WebCrawler {
 	@Override
 	protected List<String> crawlFrontier(String uri) throws Exception {
 		List<String> urls = super.crawlFrontier(uri);
-		Map<String, Collection<String>> connections = pageRank.connections();
-		for (String child : urls) {
-			if (!child.trim().equals("")) {
-				// ignore duplicate links with set
-				connections.putIfAbsent(uri, new ConcurrentSkipListSet<>());
-				connections.get(uri).add(child);
-			}
-		}
+		for (String child : urls)
+			if (!child.trim().equals(""))
+				pageRank.link(uri, child);	// ignores duplicate links
 		return urls;
 	}
 	
@@ -60,6 +54,10 @@ public class PageRankCrawler extends WebCrawler {
 		logln("> Page ranks per URL :");
 		pageRank.optimize(optimisations)
 			.forEach((key, val) -> logln("%s -> %f", key.toString(), val));
+		logln("Optimised page ranks in %s", pageRank.getLastReport());
+		pageRank.close();	// stops background refreshes
+		if (pageRank.getCheckpoints() != null && pageRank.checkpoint())
+			logln("Saved link graph to %s", pageRank.getCheckpoints());
 		duration = System.currentTimeMillis() - duration;
 		logln("Finished after %s%n", Time.fromMillis(duration));
 	}
@@ -67,6 +65,14 @@ public class PageRankCrawler extends WebCrawler {
 	public static class Builder extends WebCrawler.Builder<PageRankCrawler> {
 		private int optimisations;
 		private PageRank pageRank;
+		private ToDoubleFunction<String> scorer;
+		// Applied to the PageRank when building, unset when null or 0
+		private Double tolerance;
+		private PageRank.Method method;
+		private int parallelism;
+		private long refreshInterval;
+		private Path checkpoints;
+		private long checkpointInterval;
 		
 		public Builder(Strategy strategy) {
 			super(strategy);
@@ -87,6 +93,51 @@ public class PageRankCrawler extends WebCrawler {
 			return optimisations;
 		}
 		
+		/* Optimisations are only an upper bound when there is a tolerance */
+		public Builder setTolerance(double tolerance) {
+			this.tolerance = tolerance;
+			return this;
+		}
+		
+		public Builder setMethod(PageRank.Method method) {
+			this.method = method;
+			return this;
+		}
+		
+		/* Threads used to optimise page ranks once crawling is done */
+		public Builder setParallelism(int parallelism) {
+			if (parallelism < 1)
+				throw new IllegalArgumentException("Parallelism can only be strict positive integers");
+			this.parallelism = parallelism;
+			return this;
+		}
+		
+		/**
+		 * Keeps ranks up to date while crawling by refreshing them every 
+		 * given number of new links, the final optimisation then starts 
+		 * from the last refresh.
+		 */
+		public Builder setRefreshInterval(long edges) {
+			if (edges < 0)
+				throw new IllegalArgumentException("Refresh interval can only be positive integers");
+			refreshInterval = edges;
+			return this;
+		}
+		
+		/**
+		 * Saves the link graph to the directory every given number of new 
+		 * links and once crawling is done, it can then be reloaded through 
+		 * {@link PageRank#restore(Path)}.
+		 */
+		public Builder setCheckpoints(Path directory, long edges) {
+			if (edges < 0)
+				throw new IllegalArgumentException("Checkpoint interval can only be positive integers");
+			checkpoints = directory;
+			checkpointInterval = edges;
+			return this;
+		}
+		
+		/* Settings of this builder are applied to it when building, whatever the order */
 		public Builder setPageRank(PageRank pageRank) {
 			this.pageRank = pageRank;
 			return this;
@@ -96,13 +147,45 @@ public class PageRankCrawler extends WebCrawler {
 			return pageRank;
 		}
 		
+		/**
+		 * Sets how pages are prioritised when using the BEST_FIRST strategy, 
+		 * defaults to the in-degree of each page in the link graph.
+		 */
+		public Builder setScorer(ToDoubleFunction<String> scorer) {
+			this.scorer = scorer;
+			return this;
+		}
+		
+		public ToDoubleFunction<String> getScorer() {
+			return scorer;
+		}
+		
 		@Override
 		public PageRankCrawler build() {
-			return new PageRankCrawler(
+			PageRank pageRank = applySettings(this.pageRank);
+			if (getContext().getStrategy() == Strategy.BEST_FIRST)
+				getContext().prioritise(scorer == null ? pageRank::inDegree : scorer);
+			return configure(new PageRankCrawler(
 				getContext(),
 				getMaxDepth(),
 				optimisations,
-				pageRank);
+				pageRank));
+		}
+		
+		/* Only what was set explicitly, so that the PageRank keeps its own settings otherwise */
+		private PageRank applySettings(PageRank pageRank) {
+			if (tolerance != null)
+				pageRank.setTolerance(tolerance);
+			if (method != null)
+				pageRank.setMethod(method);
+			if (parallelism > 0)
+				pageRank.setParallelism(parallelism);
+			if (refreshInterval > 0)
+				pageRank.setWarmStart(true)
+					.setRefreshInterval(refreshInterval);
+			if (checkpoints != null)
+				pageRank.setCheckpoints(checkpoints, checkpointInterval);
+			return pageRank;
 		}
 	}
 }
\ No newline at end of file
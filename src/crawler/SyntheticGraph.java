@@ -0,0 +1,138 @@
+package crawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic directed graph over the nodes {@code 0 .. size-1} whose
+ * edges are generated on demand from the node and a seed, so that graphs
+ * of millions of nodes take no memory and every run crawls the same one.
+ * Every node is reachable from node 0.
+ * <ul>
+ * <li>Power-law graphs link every node to the next one, then to a number
+ * of random nodes following a Pareto distribution (most nodes have few
+ * links, a few have many), biased towards low ids so that in-degrees
+ * follow a power law as well (a few hubs are linked from everywhere).</li>
+ * <li>Grid graphs link every cell of a square grid to its (up to 4)
+ * neighbours, in an order shuffled by the seed.</li>
+ * </ul>
+ */
+public class SyntheticGraph {
+	public static enum Shape { POWER_LAW, GRID }
+
+	public static final int DEFAULT_MEAN_DEGREE = 8;
+	public static final long DEFAULT_SEED = 42;
+	private static final double PARETO_SHAPE = 2;	// finite mean, infinite variance
+	private static final double HUB_BIAS = 3;		// P(target < x) = (x/size)^(1/HUB_BIAS)
+	private static final int MAX_DEGREE = 1 << 12;
+
+	private final Shape shape;
+	private final long size, width;
+	private final int meanDegree;
+	private final long seed;
+
+	private SyntheticGraph(Shape shape, long size, int meanDegree, long seed) {
+		if (size <= 0)
+			throw new IllegalArgumentException("Size can only be strict positive integers");
+		if (meanDegree <= 0)
+			throw new IllegalArgumentException("Mean degree can only be strict positive integers");
+		this.shape = shape;
+		this.size = size;
+		this.meanDegree = meanDegree;
+		this.seed = seed;
+		width = (long) Math.ceil(Math.sqrt(size));
+	}
+
+	public static SyntheticGraph powerLaw(long size, int meanDegree, long seed) {
+		return new SyntheticGraph(Shape.POWER_LAW, size, meanDegree, seed);
+	}
+
+	public static SyntheticGraph powerLaw(long size) {
+		return powerLaw(size, DEFAULT_MEAN_DEGREE, DEFAULT_SEED);
+	}
+
+	/* Square grid, the last row is partial unless the size is a square */
+	public static SyntheticGraph grid(long size, long seed) {
+		return new SyntheticGraph(Shape.GRID, size, 4, seed);
+	}
+
+	public static SyntheticGraph grid(long size) {
+		return grid(size, DEFAULT_SEED);
+	}
+
+	public static SyntheticGraph of(Shape shape, long size, long seed) {
+		return shape == Shape.GRID ? grid(size, seed) : powerLaw(size, DEFAULT_MEAN_DEGREE, seed);
+	}
+
+	/* Same node and seed always give the same links */
+	public List<Long> neighbours(long node) {
+		if (node < 0 || node >= size)
+			return Collections.emptyList();
+		SplittableRandom random = randomOf(node);
+		return shape == Shape.GRID ? gridNeighbours(node, random) : powerLawNeighbours(node, random);
+	}
+
+	private List<Long> powerLawNeighbours(long node, SplittableRandom random) {
+		int degree = degreeOf(random);
+		List<Long> links = new ArrayList<>(degree);
+		links.add((node + 1) % size);	// keeps every node reachable
+		for (int i=1; i<degree; i++)
+			links.add(Math.min(size - 1, (long) (size * Math.pow(random.nextDouble(), HUB_BIAS))));
+		return links;
+	}
+
+	/* Pareto with a mean of meanDegree, capped so that a single node can't blow up the frontier */
+	private int degreeOf(SplittableRandom random) {
+		double scale = meanDegree * (PARETO_SHAPE - 1) / PARETO_SHAPE;
+		double degree = scale / Math.pow(1 - random.nextDouble(), 1 / PARETO_SHAPE);
+		return (int) Math.max(1, Math.min(MAX_DEGREE, Math.round(degree)));
+	}
+
+	private List<Long> gridNeighbours(long node, SplittableRandom random) {
+		long row = node / width, column = node % width;
+		List<Long> links = new ArrayList<>(4);
+		if (column + 1 < width && node + 1 < size)
+			links.add(node + 1);
+		if (node + width < size)
+			links.add(node + width);
+		if (column > 0)
+			links.add(node - 1);
+		if (row > 0)
+			links.add(node - width);
+		for (int i=links.size()-1; i>0; i--)
+			Collections.swap(links, i, random.nextInt(i + 1));
+		return links;
+	}
+
+	/* Independent stream per node, SplittableRandom mixes the seed itself */
+	SplittableRandom randomOf(long node) {
+		return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + node);
+	}
+
+	/* Accessors */
+
+	public Shape getShape() {
+		return shape;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public int getMeanDegree() {
+		return meanDegree;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	@Override
+	public String toString() {
+		return shape == Shape.GRID
+			? String.format("grid(%d, %dx%d, seed=%d)", size, width, (size + width - 1) / width, seed)
+			: String.format("powerLaw(%d, degree=%d, seed=%d)", size, meanDegree, seed);
+	}
+}
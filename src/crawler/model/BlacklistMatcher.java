@@ -0,0 +1,207 @@
+package crawler.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable matcher that checks a URI against a whole set of blacklist
+ * patterns (as produced by {@link URLTranslator#translate}) in one pass,
+ * with the same semantics as calling {@code find()} on each of them.
+ * <p>
+ * Pure globs (literals, {@code \.}, {@code .} and {@code .*}) are compiled
+ * into a single bit-parallel automaton (Shift-And with wildcards), where
+ * every glob character owns one bit of the state vector. Patterns that
+ * use any other regex feature are merged into one fallback alternation.
+ * Matchers and state vectors are cached per thread, so checks don't
+ * allocate.
+ */
+public class BlacklistMatcher {
+	public static final BlacklistMatcher EMPTY = new BlacklistMatcher(Collections.emptyList());
+
+	private static final int ASCII = 128, ANY = -1, STAR = -2;
+	private static final String META = "\\^$|?*+()[]{}";
+
+	private final int words;
+	private final long[] table;			// ASCII char -> positions it can advance (ASCII * words)
+	private final long[] wildcards;		// positions that accept any char
+	private final char[] wideChars;		// non-ASCII literals, with their masks in wideMasks
+	private final long[] wideMasks;
+	private final long[] initial, loops, accepts;
+	private final boolean matchesAll, hasGlobs;
+	private final ThreadLocal<long[]> states;
+	private final Pattern fallback;
+	private final ThreadLocal<Matcher> matchers;
+
+	public BlacklistMatcher(Collection<String> regexes) {
+		List<int[]> globs = new ArrayList<>();
+		List<String> others = new ArrayList<>();
+		boolean all = false;
+		int positions = 0;
+		for (String regex : regexes) {
+			int[] glob = parse(regex);
+			if (glob == null)
+				others.add(regex);
+			else if (glob.length == 0 || countPositions(glob) == 0)
+				all = true;
+			else {
+				globs.add(glob);
+				positions += countPositions(glob);
+			}
+		}
+		matchesAll = all;
+		hasGlobs = !globs.isEmpty();
+		words = Math.max(1, (positions + 63) / 64);
+		table = new long[ASCII * words];
+		wildcards = new long[words];
+		initial = new long[words];
+		loops = new long[words];
+		accepts = new long[words];
+		List<Character> wide = new ArrayList<>();
+		List<Integer> widePositions = new ArrayList<>();
+		int base = 0;
+		for (int[] glob : globs) {
+			int position = base;
+			set(initial, base);
+			for (int atom : glob) {
+				if (atom == STAR) {
+					if (position > base)	// leading stars are implied by find()
+						set(loops, position - 1);
+					continue;
+				}
+				if (atom == ANY)
+					set(wildcards, position);
+				else if (atom < ASCII)
+					set(table, atom * words, position);
+				else {
+					wide.add((char) atom);
+					widePositions.add(position);
+				}
+				position++;
+			}
+			set(accepts, position - 1);	// trailing stars are implied by find() as well
+			base = position;
+		}
+		for (int c=0; c<ASCII; c++)
+			for (int w=0; w<words; w++)
+				table[c * words + w] |= wildcards[w];
+		wideChars = new char[wide.size()];
+		wideMasks = new long[wide.size() * words];
+		for (int i=0; i<wideChars.length; i++) {
+			wideChars[i] = wide.get(i);
+			set(wideMasks, i * words, widePositions.get(i));
+		}
+		states = ThreadLocal.withInitial(() -> new long[words]);
+		if (others.isEmpty()) {
+			fallback = null;
+			matchers = null;
+		} else {
+			fallback = Pattern.compile(others.stream()
+				.map(regex -> "(?:" + regex + ")")
+				.collect(Collectors.joining("|")));
+			matchers = ThreadLocal.withInitial(() -> fallback.matcher(""));
+		}
+	}
+
+	/* Compilation helpers */
+
+	/**
+	 * @return the glob atoms (chars, ANY or STAR), or null if the
+	 * regex uses features that the automaton doesn't support
+	 */
+	private static int[] parse(String regex) {
+		int[] atoms = new int[regex.length()];
+		int n = 0;
+		for (int i=0; i<regex.length(); i++) {
+			char c = regex.charAt(i);
+			boolean hasNext = i + 1 < regex.length();
+			if (c == '\\') {
+				if (!hasNext || regex.charAt(i + 1) != '.')
+					return null;
+				atoms[n++] = '.';
+				i++;
+			} else if (c == '.') {
+				if (hasNext && regex.charAt(i + 1) == '*') {
+					atoms[n++] = STAR;
+					i++;
+				} else
+					atoms[n++] = ANY;
+			} else if (META.indexOf(c) >= 0)
+				return null;
+			else
+				atoms[n++] = c;
+		}
+		return Arrays.copyOf(atoms, n);
+	}
+
+	private static int countPositions(int[] glob) {
+		int count = 0;
+		for (int atom : glob)
+			if (atom != STAR)
+				count++;
+		return count;
+	}
+
+	private static void set(long[] bits, int position) {
+		set(bits, 0, position);
+	}
+
+	private static void set(long[] bits, int offset, int position) {
+		bits[offset + (position >>> 6)] |= 1L << (position & 63);
+	}
+
+	/* Matching */
+
+	public boolean matches(CharSequence input) {
+		if (matchesAll)
+			return true;
+		if (hasGlobs && (words == 1 ? matchesSingleWord(input) : matchesMultiWord(input)))
+			return true;
+		return fallback != null && matchers.get().reset(input).find();
+	}
+
+	/* Up to 64 glob characters, the whole state fits in a register */
+	private boolean matchesSingleWord(CharSequence input) {
+		long state = 0L, init = initial[0], loop = loops[0], accept = accepts[0];
+		for (int i=0; i<input.length(); i++) {
+			char c = input.charAt(i);
+			long mask = c < ASCII ? table[c] : wideMask(c, 0);
+			state = (((state << 1) | init) & mask) | (state & loop);
+			if ((state & accept) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	private boolean matchesMultiWord(CharSequence input) {
+		long[] state = states.get();
+		Arrays.fill(state, 0L);
+		for (int i=0; i<input.length(); i++) {
+			char c = input.charAt(i);
+			boolean accepted = false;
+			// Going downwards lets the carry read the previous word before it's updated
+			for (int w=words-1; w>=0; w--) {
+				long shifted = (state[w] << 1) | (w > 0 ? state[w - 1] >>> 63 : 0L),
+					mask = c < ASCII ? table[c * words + w] : wideMask(c, w);
+				state[w] = ((shifted | initial[w]) & mask) | (state[w] & loops[w]);
+				accepted |= (state[w] & accepts[w]) != 0;
+			}
+			if (accepted)
+				return true;
+		}
+		return false;
+	}
+
+	private long wideMask(char c, int word) {
+		long mask = wildcards[word];
+		for (int i=0; i<wideChars.length; i++)
+			if (wideChars[i] == c)
+				mask |= wideMasks[i * words + word];
+		return mask;
+	}
+}
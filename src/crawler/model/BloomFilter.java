@@ -0,0 +1,76 @@
+package crawler.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Lock-free blocked Bloom filter over 64-bit hashes. All the bits
+ * of a key live in the same word, so both put and mightContain
+ * cost a single memory access instead of one per hash function.
+ */
+public class BloomFilter {
+	public static final int DEFAULT_BITS_PER_ENTRY = 10;
+	private static final int MAX_HASHES = 10;	// 6 bits of hash per function
+
+	private final AtomicLongArray words;
+	private final int hashes;
+	private final LongAdder bitsSet;
+
+	public BloomFilter(long expectedEntries, int bitsPerEntry) {
+		long bits = Math.max(64, expectedEntries * bitsPerEntry);
+		if (bits / 64 > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Bloom filter is too large: "+bits+" bits");
+		words = new AtomicLongArray((int) ((bits + 63) / 64));
+		hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(bitsPerEntry * Math.log(2))));
+		bitsSet = new LongAdder();
+	}
+
+	public BloomFilter(long expectedEntries) {
+		this(expectedEntries, DEFAULT_BITS_PER_ENTRY);
+	}
+
+	private int index(long hash) {
+		return (int) ((hash >>> 1) % words.length());
+	}
+
+	private long mask(long hash) {
+		long remixed = VisitedSet.mix(hash ^ 0x9e3779b97f4a7c15L), mask = 0L;
+		for (int i=0; i<hashes; i++)
+			mask |= 1L << ((remixed >>> (i * 6)) & 63);
+		return mask;
+	}
+
+	/**
+	 * @return true if at least one bit changed (e.g. the hash was
+	 * definitely not in the filter before)
+	 */
+	public boolean put(long hash) {
+		int index = index(hash);
+		long mask = mask(hash), current, updated;
+		do {
+			current = words.get(index);
+			updated = current | mask;
+			if (updated == current)
+				return false;
+		} while (!words.compareAndSet(index, current, updated));
+		bitsSet.add(Long.bitCount(updated) - Long.bitCount(current));
+		return true;
+	}
+
+	public boolean mightContain(long hash) {
+		long mask = mask(hash);
+		return (words.get(index(hash)) & mask) == mask;
+	}
+
+	/**
+	 * Estimated from the current fill ratio, which already accounts
+	 * for how many entries were inserted.
+	 */
+	public double falsePositiveRate() {
+		double fill = (double) bitsSet.sum() / (words.length() * 64L);
+		return Math.pow(fill, hashes);
+	}
+
+	public long sizeInBytes() {
+		return words.length() * 8L;
+	}
+}
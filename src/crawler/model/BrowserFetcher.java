@@ -0,0 +1,60 @@
+package crawler.model;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import browser.common.Browser;
+import browser.common.BrowserPool;
+
+/**
+ * Fetches pages through a real browser, so that links added by scripts
+ * are found too. The browser is either launched on the first fetch and
+ * kept until closed, or leased from a pool for every fetch.
+ * <p>
+ * Not thread-safe, every crawler needs its own (the pool can be shared).
+ */
+public class BrowserFetcher implements Fetcher {
+	private final Supplier<Browser> factory;
+	private final BrowserPool pool;
+	private Browser browser;
+
+	public BrowserFetcher(Supplier<Browser> factory) {
+		this.factory = factory;
+		pool = null;
+	}
+
+	public BrowserFetcher(BrowserPool pool) {
+		this.pool = pool;
+		factory = null;
+	}
+
+	@Override
+	public List<String> fetch(String uri) throws Exception {
+		if (pool == null) {
+			if (browser == null)
+				browser = factory.get();
+			return browser.visit(uri).links();	// get all <a> hrefs in one round-trip
+		}
+		Browser browser = pool.lease();
+		try {
+			List<String> links = browser.visit(uri).links();
+			pool.release(browser);
+			return links;
+		} catch (Exception e) {
+			pool.check(browser);	// discarded if it crashed
+			throw e;
+		}
+	}
+
+	public BrowserPool getPool() {
+		return pool;
+	}
+
+	@Override
+	public void close() {
+		if (browser != null) {
+			browser.close();
+			browser = null;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package crawler.model;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Lock-free multi-producer/multi-consumer FIFO storage used for
+ * Breadth-first search. The size is tracked separately since
+ * ConcurrentLinkedQueue::size needs to traverse the whole queue.
+ */
+public class ConcurrentQueueStorage<V> implements LinearStorage<V> {
+	private final ConcurrentLinkedQueue<V> queue;
+	private final LongAdder size;
+
+	public ConcurrentQueueStorage() {
+		queue = new ConcurrentLinkedQueue<>();
+		size = new LongAdder();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return (int) Math.max(0, size.sum());
+	}
+
+	@Override
+	public ConcurrentQueueStorage<V> push(V e) {
+		queue.offer(e);
+		size.increment();
+		return this;
+	}
+
+	@Override
+	public V pop() {
+		V e = queue.poll();
+		if (e != null)
+			size.decrement();
+		return e;
+	}
+
+	/* Links the batch up first, then appends it with a single CAS */
+	@Override
+	public ConcurrentQueueStorage<V> pushAll(Collection<? extends V> elements) {
+		if (!elements.isEmpty()) {
+			queue.addAll(elements);
+			size.add(elements.size());
+		}
+		return this;
+	}
+
+	@Override
+	public int drainTo(Collection<? super V> buffer, int max) {
+		int n = 0;
+		for (V e; n < max && (e = queue.poll()) != null; n++)
+			buffer.add(e);
+		if (n > 0)
+			size.add(-n);
+		return n;
+	}
+}
@@ -1,30 +1,41 @@
 package crawler.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.Stack;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class Context<Uri> {
-	public static enum Strategy { BREADTH_FIRST, DEPTH_FIRST }
+	public static enum Strategy { BREADTH_FIRST, DEPTH_FIRST, BEST_FIRST }
 	
 	protected final Strategy strategy;
 	protected final LinearStorage<Match<Uri>> storage;
-	protected final Set<Uri> visited;
+	protected final VisitedSet<Uri> visited;
 	protected final Set<Pattern> blacklist;
+	private volatile BlacklistMatcher matcher;	// compiled from blacklist
 	private Predicate<Uri> filter;
+	private volatile Journal<Uri> journal;	// null when not journaled
 	
 	/* Internal */
 	private final AtomicInteger count;
+	private final AtomicInteger pending, waiters;
+	private final ReentrantLock lock;
+	private final Condition available;
 	
 	public static final Comparator<Pattern> PATTERN_COMPARATOR = new Comparator<>() {
 		@Override
@@ -33,32 +44,96 @@ public class Context<Uri> {
 		}
 	};
 	
-	public Context(List<Uri> uris, Set<Uri> visited, List<String> blacklist, Predicate<Uri> filter, int count, Strategy strategy) {
-		this.visited = new ConcurrentSkipListSet<>(visited);
+	public Context(List<Uri> uris, VisitedSet<Uri> visited, List<String> blacklist, Predicate<Uri> filter, int count, Strategy strategy, LinearStorage<Match<Uri>> storage) {
+		this.visited = visited;
 		this.blacklist = new ConcurrentSkipListSet<>(PATTERN_COMPARATOR);
+		this.matcher = BlacklistMatcher.EMPTY;
 		this.count = new AtomicInteger(count);
 		this.filter = filter;
-		// Set storage based on strategy
 		this.strategy = strategy;
-		if (strategy == Strategy.DEPTH_FIRST) 
-			storage = new LinearStorage<>(new Stack<>());
-		else
-			storage = new LinearStorage<>(new LinkedList<>());
+		this.storage = storage;
+		pending = new AtomicInteger();
+		waiters = new AtomicInteger();
+		lock = new ReentrantLock();
+		available = lock.newCondition();
 		// Transfer initial URIs and blacklist over
 		for (Uri uri: uris)
-			storage.push(Match.of(uri));
-		for (String url : blacklist)
-			blacklist(url);
+			offer(Match.of(uri));
+		blacklist(blacklist);
+	}
+	
+	public Context(List<Uri> uris, Set<Uri> visited, List<String> blacklist, Predicate<Uri> filter, int count, Strategy strategy) {
+		this(uris, new ExactVisitedSet<>(visited), blacklist, filter, count, strategy, createStorage(strategy));
+	}
+	
+	public Context(Strategy strategy, LinearStorage<Match<Uri>> storage, VisitedSet<Uri> visited) {
+		this(new ArrayList<>(), visited, new ArrayList<>(), uri -> true, 0, strategy, storage);
+	}
+	
+	public Context(Strategy strategy, LinearStorage<Match<Uri>> storage) {
+		this(strategy, storage, new ExactVisitedSet<>());
 	}
 	
 	public Context(Strategy strategy) {
-		this(new ArrayList<>(), new HashSet<>(), new ArrayList<>(), uri -> true, 0, strategy);
+		this(strategy, createStorage(strategy));
 	}
 	
 	public static <T> Context<T> create(Strategy strategy) {
 		return new Context<>(strategy);
 	}
 	
+	public static <T> Context<T> create(Strategy strategy, LinearStorage<Match<T>> storage) {
+		return new Context<>(strategy, storage);
+	}
+	
+	public static <T> Context<T> create(Strategy strategy, VisitedSet<T> visited) {
+		return new Context<>(strategy, createStorage(strategy), visited);
+	}
+	
+	/**
+	 * Creates a context whose frontier spills to segment files in the 
+	 * directory once it outgrows memory.
+	 * 
+	 * @throws IllegalArgumentException for best-first contexts, which can't spill
+	 */
+	public static <T> Context<T> create(Strategy strategy, Codec<T> codec, Path directory) throws IOException {
+		Codec<Match<T>> matches = Match.codec(codec);
+		switch (strategy) {
+			case BREADTH_FIRST: return new Context<>(strategy, SpillingStorage.queue(matches, directory));
+			case DEPTH_FIRST: return new Context<>(strategy, SpillingStorage.stack(matches, directory));
+			default: throw new IllegalArgumentException("Frontier can't be spilled to disk with "+strategy);
+		}
+	}
+	
+	/**
+	 * Creates a context whose frontier is split per host, so that hosts 
+	 * are crawled politely: with at most maxInFlight pages being crawled 
+	 * at once per host, started at least minDelay ms apart.
+	 * 
+	 * @throws IllegalArgumentException for best-first contexts
+	 */
+	public static Context<String> polite(Strategy strategy, int maxInFlight, long minDelay) {
+		Function<Match<String>, String> host = match -> URLCanonicalizer.hostOf(match.getUri());
+		switch (strategy) {
+			case BREADTH_FIRST: return new Context<>(strategy, PolitenessStorage.queue(host, maxInFlight, minDelay));
+			case DEPTH_FIRST: return new Context<>(strategy, PolitenessStorage.stack(host, maxInFlight, minDelay));
+			default: throw new IllegalArgumentException("Hosts can't be crawled politely with "+strategy);
+		}
+	}
+	
+	/* Default storage is lock-free so that it can be shared by all the
+	 * workers of a MultiCrawler: a work-stealing stack per thread for
+	 * DFS, a single concurrent queue for BFS and a concurrent priority
+	 * queue for best-first (shallowest first until prioritised).
+	 */
+	protected static <T> LinearStorage<Match<T>> createStorage(Strategy strategy) {
+		switch (strategy) {
+			case DEPTH_FIRST: return new WorkStealingStorage<>();
+			case BEST_FIRST: return new PriorityStorage<>(match -> -match.getDepth());
+			default: return new ConcurrentQueueStorage<>();
+		}
+	}
+	
 	/* Accessors */
 	
 	public Strategy getStrategy() {
@@ -95,54 +170,228 @@ public class Context<Uri> {
 		return count.get();
 	}
 	
+	/* Work tracking (shared by all workers of a crawl)
+	 * 
+	 * Pending counts the elements in storage plus the ones currently 
+	 * being expanded. Since only expansions can push new elements, the 
+	 * crawl is over as soon as it drops to 0. Elements pushed directly 
+	 * to storage() bypass this count.
+	 */
+	
+	protected void offer(Match<Uri> match) {
+		Journal<Uri> journal = this.journal;
+		if (journal != null)
+			journal.push(match);
+		pending.incrementAndGet();
+		storage.push(match);
+		signal(false);
+	}
+	
+	/* Same as offering them one by one, with a single push to storage */
+	protected void offerAll(List<Match<Uri>> matches) {
+		if (matches.isEmpty())
+			return;
+		Journal<Uri> journal = this.journal;
+		if (journal != null)
+			for (Match<Uri> match : matches)
+				journal.push(match);
+		pending.addAndGet(matches.size());
+		storage.pushAll(matches);
+		signal(matches.size() > 1);
+	}
+	
+	/**
+	 * @return the next element to expand, or null if storage is empty
+	 */
+	protected Match<Uri> poll() {
+		Match<Uri> match = storage.pop();
+		Journal<Uri> journal = this.journal;
+		if (match != null && journal != null)
+			journal.pop(match);
+		return match;
+	}
+	
+	/**
+	 * Moves up to max elements to expand from storage to the batch, each 
+	 * of them needs to be either completed or requeued afterwards.
+	 * 
+	 * @return the number of elements moved, 0 if storage is empty (or 
+	 * holds them back, see LinearStorage::readyIn)
+	 */
+	protected int poll(List<Match<Uri>> batch, int max) {
+		int start = batch.size(), n = storage.drainTo(batch, max);
+		Journal<Uri> journal = this.journal;
+		if (journal != null)
+			for (int i=start; i<start+n; i++)
+				journal.pop(batch.get(i));
+		return n;
+	}
+	
+	/**
+	 * Gives back polled elements that won't be expanded after all (e.g. 
+	 * the rest of a batch when expanding failed), they stay pending.
+	 */
+	protected void requeue(List<Match<Uri>> matches) {
+		if (matches.isEmpty())
+			return;
+		Journal<Uri> journal = this.journal;
+		if (journal != null)
+			for (Match<Uri> match : matches) {
+				journal.done(match);	// no longer in flight...
+				journal.push(match);	// ...but back in the frontier
+			}
+		storage.pushAll(matches);
+		for (Match<Uri> match : matches)
+			storage.done(match);
+		signal(matches.size() > 1);
+	}
+	
+	protected void complete(Match<Uri> match) {
+		Journal<Uri> journal = this.journal;
+		if (journal != null)
+			journal.done(match);
+		boolean released = storage.done(match);
+		if (pending.decrementAndGet() <= 0)
+			signal(true);
+		else if (released)
+			signal(false);
+	}
+	
+	public int pending() {
+		return pending.get();
+	}
+	
+	/**
+	 * Parks the calling worker until there is work available or the 
+	 * crawl is over. The timeout is only a safety net for elements 
+	 * that were pushed without going through the context, storages 
+	 * that hold elements back (see LinearStorage::readyIn) are waited 
+	 * for no longer than needed.
+	 * 
+	 * @return true if there is work available, false if the crawl is over
+	 */
+	protected boolean awaitWork(long timeout) throws InterruptedException {
+		lock.lock();
+		waiters.incrementAndGet();
+		try {
+			for (long delay; (delay = storage.readyIn()) > 0;) {
+				if (storage.isEmpty() && pending.get() <= 0)
+					return false;
+				available.await(Math.min(timeout, delay), TimeUnit.MILLISECONDS);
+			}
+			return true;
+		} finally {
+			waiters.decrementAndGet();
+			lock.unlock();
+		}
+	}
+	
+	/* Only takes the lock when a worker is actually parked */
+	private void signal(boolean all) {
+		if (waiters.get() == 0)
+			return;
+		lock.lock();
+		try {
+			if (all)
+				available.signalAll();
+			else
+				available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/* Crash recovery */
+	
+	/**
+	 * Restores the visited set, visits count and frontier held by the 
+	 * journal, then records every change made to them from now on into 
+	 * it, so that a crashed crawl can be resumed by restoring the same 
+	 * journal again. Needs to be called before pushing any URI.
+	 * 
+	 * @return what was restored
+	 */
+	public synchronized Journal.State<Uri> restore(Journal<Uri> journal) throws IOException {
+		if (this.journal != null)
+			throw new IllegalStateException("Context is already journaled");
+		if (pending.get() > 0)
+			throw new IllegalStateException("Journals need to be restored before pushing URIs");
+		Journal.State<Uri> state = journal.recover(visited::add);
+		count.addAndGet(state.getVisits());
+		for (Match<Uri> match : state.getFrontier()) {
+			pending.incrementAndGet();
+			storage.push(match);
+		}
+		this.journal = journal;
+		signal(true);
+		return state;
+	}
+	
+	public Journal<Uri> getJournal() {
+		return journal;
+	}
+	
 	/* Adding blacklist */
 	
 	public Context<Uri> blacklist(String pattern) {
-		blacklist.add(Pattern.compile(URLTranslator.translate(pattern)));
-		return this;
+		return blacklist(List.of(pattern));
 	}
 	
 	public Context<Uri> unblacklist(String pattern) {
-		String converted = URLTranslator.translate(pattern);
-		Pattern found = null;
-		for (Pattern item : blacklist)
-			if (item.pattern().equals(converted))
-				found = item;
-		if (found != null)
-			blacklist.remove(found);
-		return this;
+		return unblacklist(List.of(pattern));
 	}
 	
-	public Context<Uri> blacklist(Collection<String> patterns) {
+	/* Modifications are serialised so that the matcher always gets
+	 * rebuilt from the latest patterns, then swapped in atomically. 
+	 */
+	public synchronized Context<Uri> blacklist(Collection<String> patterns) {
 		for (String pattern : patterns)
-			blacklist(pattern);
+			blacklist.add(Pattern.compile(URLTranslator.translate(pattern)));
+		recompile();
 		return this;
 	}
 	
 	public Context<Uri> blacklist(String...patterns) {
-		for (String pattern : patterns)
-			blacklist(pattern);
-		return this;
+		return blacklist(List.of(patterns));
 	}
 	
-	public Context<Uri> unblacklist(Collection<String> patterns) {
-		for (String pattern : patterns)
-			unblacklist(pattern);
+	public synchronized Context<Uri> unblacklist(Collection<String> patterns) {
+		for (String pattern : patterns) {
+			String converted = URLTranslator.translate(pattern);
+			blacklist.removeIf(item -> item.pattern().equals(converted));
+		}
+		recompile();
 		return this;
 	}
 	
 	public Context<Uri> unblacklist(String...patterns) {
-		for (String pattern : patterns)
-			unblacklist(pattern);
-		return this;
+		return unblacklist(List.of(patterns));
+	}
+	
+	private void recompile() {
+		matcher = new BlacklistMatcher(blacklist.stream()
+			.map(Pattern::pattern)
+			.collect(Collectors.toList()));
 	}
 	
 	protected boolean isBlacklisted(Uri uri) {
-		for (Pattern pattern : blacklist)
-			if (pattern.matcher(uri.toString())
-					.find())
-				return true;
-		return false;
+		return matcher.matches(uri instanceof CharSequence ? (CharSequence) uri : uri.toString());
+	}
+	
+	/* Best-first prioritisation */
+	
+	/**
+	 * Sets how URIs pushed from now on are prioritised, higher scores
+	 * getting crawled first.
+	 * 
+	 * @throws IllegalStateException if storage isn't a PriorityStorage
+	 */
+	@SuppressWarnings("unchecked")
+	public Context<Uri> prioritise(ToDoubleFunction<Uri> scorer) {
+		if (!(storage instanceof PriorityStorage))
+			throw new IllegalStateException("Only best-first storages can be prioritised");
+		((PriorityStorage<Match<Uri>>) storage).setScorer(match -> scorer.applyAsDouble(match.getUri()));
+		return this;
 	}
 	
 	/* Uri filtering methods */
@@ -168,7 +417,12 @@ public class Context<Uri> {
 	
 	/* Accessor and helper methods */
 	
+	/* Read-only, see VisitedSet.asSet() */
 	public Set<Uri> getVisited() {
+		return visited.asSet();
+	}
+	
+	public VisitedSet<Uri> getVisitedSet() {
 		return visited;
 	}
 	
@@ -176,15 +430,32 @@ public class Context<Uri> {
 		return visited.contains(uri);
 	}
 	
+	/**
+	 * Atomically marks the URI as visited, so that only one of the 
+	 * workers that popped the same URI goes on to visit it.
+	 * @return true if it wasn't visited yet
+	 */
+	public boolean claim(Uri uri) {
+		if (!visited.add(uri))
+			return false;
+		Journal<Uri> journal = this.journal;
+		if (journal != null)
+			journal.visit(uri);
+		return true;
+	}
+	
+	/* Outside of crawling, e.g. URIs known to be crawled already */
 	public void markVisited(Uri uri) {
-		visited.add(uri);
+		Journal<Uri> journal = this.journal;
+		if (visited.add(uri) && journal != null)
+			journal.mark(uri);
 	}
 	
 	/* Adding URIs */
 	
 	public Context<Uri> push(int depth, Uri uri) {
 		if (!wasVisited(uri))	// prevent re-crawling same targets
-			storage.push(Match.of(depth, uri));
+			offer(Match.of(depth, uri));
 		return this;
 	}
 	
@@ -259,5 +530,21 @@ public class Context<Uri> {
 					.map(Match::of)
 					.collect(Collectors.toList());
 		}
+		
+		public static <Uri> Codec<Match<Uri>> codec(Codec<Uri> codec) {
+			return new Codec<>() {
+				@Override
+				public void write(DataOutput out, Match<Uri> match) throws IOException {
+					out.writeInt(match.depth);
+					codec.write(out, match.uri);
+				}
+				
+				@Override
+				public Match<Uri> read(DataInput in) throws IOException {
+					int depth = in.readInt();
+					return of(depth, codec.read(in));
+				}
+			};
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+package crawler.model;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of a crawl, shared by all the workers
+ * of a {@link MultiCrawler}. Recording only touches striped counters
+ * ({@link LongAdder} and {@link Histogram}), so it stays on by default.
+ * <p>
+ * Metrics are pulled, either through {@link #snapshot()} or over JMX
+ * once {@link #register(String) registered}.
+ */
+public class CrawlMetrics implements CrawlMetricsMXBean {
+	public static final String DOMAIN = "crawler";
+
+	public static enum Phase {
+		FRONTIER,	// crawlFrontier, e.g. fetching pages
+		VISIT,		// onVisit
+		HOOKS		// pre/post visit actions
+	}
+
+	private final Context<?> context;
+	private final LongAdder visited, expanded, links, blacklisted, revisited, filtered, failures;
+	private final Map<Phase, Histogram> latencies;
+	private volatile long started;	// ns, on first expansion
+	private volatile ObjectName name;
+
+	public CrawlMetrics(Context<?> context) {
+		this.context = context;
+		visited = new LongAdder();
+		expanded = new LongAdder();
+		links = new LongAdder();
+		blacklisted = new LongAdder();
+		revisited = new LongAdder();
+		filtered = new LongAdder();
+		failures = new LongAdder();
+		latencies = new EnumMap<>(Phase.class);
+		for (Phase phase : Phase.values())
+			latencies.put(phase, new Histogram());
+	}
+
+	/* Recording (called by Crawler) */
+
+	void record(Phase phase, long nanos) {
+		latencies.get(phase).record(nanos);
+	}
+
+	void visited() {
+		visited.increment();
+	}
+
+	void expanded(int children) {
+		if (started == 0)
+			started = System.nanoTime();
+		expanded.increment();
+		links.add(children);
+	}
+
+	void failed() {
+		failures.increment();
+	}
+
+	void blacklisted() {
+		blacklisted.increment();
+	}
+
+	void revisited() {
+		revisited.increment();
+	}
+
+	void filtered() {
+		filtered.increment();
+	}
+
+	/* JMX */
+
+	/**
+	 * Exposes the metrics as {@code crawler:type=CrawlMetrics,name=<name>},
+	 * replacing whatever was registered under the same name.
+	 */
+	public synchronized CrawlMetrics register(String name) throws JMException {
+		unregister();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName(DOMAIN + ":type=CrawlMetrics,name=" + ObjectName.quote(name));
+		if (server.isRegistered(objectName))
+			server.unregisterMBean(objectName);
+		server.registerMBean(this, objectName);
+		this.name = objectName;
+		return this;
+	}
+
+	public synchronized void unregister() throws JMException {
+		if (name != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			name = null;
+		}
+	}
+
+	public ObjectName getName() {
+		return name;
+	}
+
+	/* Pulling */
+
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	@Override
+	public long getVisited() {
+		return visited.sum();
+	}
+
+	@Override
+	public long getExpanded() {
+		return expanded.sum();
+	}
+
+	@Override
+	public double getPagesPerSecond() {
+		long started = this.started;
+		if (started == 0)
+			return 0;
+		double seconds = (System.nanoTime() - started) / 1e9;
+		return seconds <= 0 ? 0 : expanded.sum() / seconds;
+	}
+
+	@Override
+	public long getLinks() {
+		return links.sum();
+	}
+
+	@Override
+	public long getBlacklisted() {
+		return blacklisted.sum();
+	}
+
+	@Override
+	public long getRevisited() {
+		return revisited.sum();
+	}
+
+	@Override
+	public long getFiltered() {
+		return filtered.sum();
+	}
+
+	@Override
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	@Override
+	public long getPending() {
+		return context.pending();
+	}
+
+	@Override
+	public long getFrontierSize() {
+		return context.storage().size();
+	}
+
+	public Histogram.Snapshot getLatency(Phase phase) {
+		return latencies.get(phase).snapshot();
+	}
+
+	@Override
+	public Map<String, Double> getLatencies() {
+		Map<String, Double> millis = new LinkedHashMap<>();
+		for (Phase phase : Phase.values()) {
+			Histogram.Snapshot latency = getLatency(phase);
+			String prefix = phase.name().toLowerCase(Locale.ROOT) + ".";
+			millis.put(prefix + "count", (double) latency.getCount());
+			millis.put(prefix + "mean", latency.getMean() / 1e6);
+			millis.put(prefix + "p50", latency.getPercentile(50) / 1e6);
+			millis.put(prefix + "p99", latency.getPercentile(99) / 1e6);
+			millis.put(prefix + "max", latency.getMax() / 1e6);
+		}
+		return millis;
+	}
+
+	@Override
+	public void reset() {
+		for (LongAdder counter : new LongAdder[] { visited, expanded, links, blacklisted, revisited, filtered, failures })
+			counter.reset();
+		for (Histogram histogram : latencies.values())
+			histogram.reset();
+		started = 0;
+	}
+
+	/* Point in time view of the metrics */
+	public static class Snapshot {
+		private final long visited, expanded, links, blacklisted, revisited, filtered, failures, pending, frontierSize;
+		private final double pagesPerSecond;
+		private final Map<Phase, Histogram.Snapshot> latencies;
+
+		private Snapshot(CrawlMetrics metrics) {
+			visited = metrics.getVisited();
+			expanded = metrics.getExpanded();
+			links = metrics.getLinks();
+			blacklisted = metrics.getBlacklisted();
+			revisited = metrics.getRevisited();
+			filtered = metrics.getFiltered();
+			failures = metrics.getFailures();
+			pending = metrics.getPending();
+			frontierSize = metrics.getFrontierSize();
+			pagesPerSecond = metrics.getPagesPerSecond();
+			latencies = new EnumMap<>(Phase.class);
+			for (Phase phase : Phase.values())
+				latencies.put(phase, metrics.getLatency(phase));
+		}
+
+		public long getVisited() {
+			return visited;
+		}
+
+		public long getExpanded() {
+			return expanded;
+		}
+
+		public long getLinks() {
+			return links;
+		}
+
+		public long getBlacklisted() {
+			return blacklisted;
+		}
+
+		public long getRevisited() {
+			return revisited;
+		}
+
+		public long getFiltered() {
+			return filtered;
+		}
+
+		public long getFailures() {
+			return failures;
+		}
+
+		public long getPending() {
+			return pending;
+		}
+
+		public long getFrontierSize() {
+			return frontierSize;
+		}
+
+		public double getPagesPerSecond() {
+			return pagesPerSecond;
+		}
+
+		/* In nanoseconds */
+		public Histogram.Snapshot getLatency(Phase phase) {
+			return latencies.get(phase);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(String.format(
+				"visited=%d expanded=%d (%.1f/s) links=%d rejected=[blacklisted=%d revisited=%d filtered=%d] failures=%d pending=%d frontier=%d",
+				visited, expanded, pagesPerSecond, links, blacklisted, revisited, filtered, failures, pending, frontierSize));
+			for (Phase phase : Phase.values()) {
+				Histogram.Snapshot latency = latencies.get(phase);
+				sb.append(String.format("%n%s: count=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms",
+					phase.name().toLowerCase(Locale.ROOT), latency.getCount(), latency.getMean() / 1e6,
+					latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6,
+					latency.getMax() / 1e6));
+			}
+			return sb.toString();
+		}
+	}
+}
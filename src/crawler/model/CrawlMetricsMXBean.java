@@ -0,0 +1,33 @@
+package crawler.model;
+
+import java.util.Map;
+
+/* JMX view of CrawlMetrics, latencies are in milliseconds */
+public interface CrawlMetricsMXBean {
+
+	long getVisited();
+
+	long getExpanded();
+
+	double getPagesPerSecond();
+
+	long getLinks();
+
+	long getBlacklisted();
+
+	long getRevisited();
+
+	long getFiltered();
+
+	long getFailures();
+
+	/* Elements in storage plus the ones being expanded */
+	long getPending();
+
+	long getFrontierSize();
+
+	/* e.g. "frontier.p99" -> 12.5 */
+	Map<String, Double> getLatencies();
+
+	void reset();
+}
@@ -1,13 +1,17 @@
 package crawler.model;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import crawler.model.Context.Match;
 import crawler.model.Context.Strategy;
+import crawler.model.CrawlMetrics.Phase;
+import crawler.model.Log.Level;
 
 /**
  * A Crawler is a thread that can search, up to a specified depth, 
@@ -18,6 +22,8 @@ import crawler.model.Context.Strategy;
  */
 public abstract class Crawler<Uri> implements Callable<Void>, Loggeable {
 	public static final int DEFAULT_MAX_DEPTH = 1;
+	public static final int DEFAULT_BATCH_SIZE = 16;	// breadth-first only
+	private static final int BATCH_SHARE = 8;	// max fraction of pending work taken at once
 	public static final String 
 		PRE_PHASE = "preCrawl",
 		CRAWL_PHASE = "crawl",
@@ -27,6 +33,10 @@ public abstract class Crawler<Uri> implements Callable<Void>, Loggeable {
 	protected final int maxDepth;
 	protected final Context<Uri> context;
 	protected final List<Action> preExecute, postExecute, preVisit, postVisit;
+	private Semaphore limiter;	// shared by workers of a MultiCrawler
+	private volatile CrawlMetrics metrics;	// shared by workers of a MultiCrawler, created on first use otherwise
+	private int batchSize;
+	private final List<Match<Uri>> children;	// reused between expansions
 	
 	public Crawler(Context<Uri> context, int maxDepth) {
 		if (maxDepth < 0)
@@ -37,6 +47,8 @@ public abstract class Crawler<Uri> implements Callable<Void>, Loggeable {
 		postExecute = new ArrayList<>();
 		preVisit = new ArrayList<>();
 		postVisit = new ArrayList<>();
+		batchSize = context.getStrategy() == Strategy.BREADTH_FIRST ? DEFAULT_BATCH_SIZE : 1;
+		children = new ArrayList<>();
 	}
 	
 	/**
@@ -45,6 +57,15 @@ public abstract class Crawler<Uri> implements Callable<Void>, Loggeable {
 	 */
 	protected abstract List<Uri> crawlFrontier(Uri uri) throws Exception;
 	
+	/**
+	 * Called once a failure of crawlFrontier was counted in the metrics. 
+	 * Rethrows by default, which stops the crawler, subclasses can return 
+	 * the frontier to carry on with instead (e.g. none).
+	 */
+	protected List<Uri> frontierFailed(Uri uri, Exception e) throws Exception {
+		throw e;
+	}
+	
 	/* Crawling methods */
 	
 	public Crawler<Uri> crawl() throws Exception {
@@ -72,36 +93,152 @@ public abstract class Crawler<Uri> implements Callable<Void>, Loggeable {
 	
 	public final void executeStrategy() throws Exception {
 		preExecute();
-		while (!context.storage.isEmpty()) {
-			preVisit();
-			Match<Uri> element = context.storage().pop();
-			if (!validMatch(element))
-				continue;
-			onVisit(element.getUri());
-			int nextDepth = element.getDepth() + 1;
-			if (nextDepth > maxDepth)
+		List<Match<Uri>> batch = new ArrayList<>(batchSize);
+		while (true) {
+			if (context.poll(batch, batchLimit()) == 0) {
+				// Only empty once polling failed, storage may also be holding elements back
+				if (context.storage().isEmpty())
+					break;
+				context.awaitWork(MultiCrawler.DEFAULT_WORK_CHECK_DELAY);	// e.g. hosts waiting for their politeness delay
 				continue;
-			for (Uri child : crawlFrontier(element.getUri()))
-				context.storage().push(Match.of(nextDepth, child));
-			postVisit();
+			}
+			expandAll(batch);
 		}
 		postExecute();
 	}
 	
+	/* Whatever is left of the batch when failing goes back to the frontier */
+	private final void expandAll(List<Match<Uri>> batch) throws Exception {
+		int next = 0;
+		try {
+			while (next < batch.size()) {
+				preVisit();
+				Match<Uri> element = batch.get(next++);
+				try {
+					if (expand(element))
+						postVisit();
+				} finally {
+					context.complete(element);
+				}
+			}
+		} finally {
+			context.requeue(batch.subList(next, batch.size()));
+			batch.clear();
+		}
+	}
+	
+	/* Small frontiers are left for other workers rather than batched */
+	private final int batchLimit() {
+		if (batchSize <= 1)
+			return 1;
+		return Math.max(1, Math.min(batchSize, context.pending() / BATCH_SHARE));
+	}
+	
+	/* Visits an element and pushes its children, returns false if it was skipped */
+	private final boolean expand(Match<Uri> element) throws Exception {
+		if (!validMatch(element))
+			return false;
+		CrawlMetrics metrics = getMetrics();
+		long start = System.nanoTime();
+		onVisit(element.getUri());
+		metrics.record(Phase.VISIT, System.nanoTime() - start);
+		metrics.visited();
+		int nextDepth = element.getDepth() + 1;
+		if (nextDepth > maxDepth)
+			return false;
+		children.clear();
+		for (Uri child : limitedFrontier(element.getUri()))
+			if (!context.wasVisited(child))		// no need to queue what would be skipped anyway
+				children.add(Match.of(nextDepth, child));
+		context.offerAll(children);
+		return true;
+	}
+	
+	/* Only times crawlFrontier itself, not the wait for the limiter */
+	private final List<Uri> limitedFrontier(Uri uri) throws Exception {
+		if (limiter != null)
+			limiter.acquire();
+		CrawlMetrics metrics = getMetrics();
+		long start = System.nanoTime();
+		try {
+			List<Uri> frontier = crawlFrontier(uri);
+			metrics.expanded(frontier.size());
+			return frontier;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();	// e.g. closed while waiting on a pool, the worker has to stop
+			throw e;
+		} catch (Exception e) {
+			metrics.failed();
+			return frontierFailed(uri, e);
+		} finally {
+			metrics.record(Phase.FRONTIER, System.nanoTime() - start);
+			if (limiter != null)
+				limiter.release();
+		}
+	}
+	
+	/**
+	 * Max number of elements taken from the frontier at once, so that 
+	 * workers contend on it once per batch rather than once per element. 
+	 * Batches only keep the crawl order of breadth-first crawls, others 
+	 * default to 1.
+	 */
+	public Crawler<Uri> setBatchSize(int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Batch size can only be strict positive integers");
+		this.batchSize = batchSize;
+		return this;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/* Package private since only MultiCrawler sets a concurrency limit */
+	Crawler<Uri> limit(Semaphore limiter) {
+		this.limiter = limiter;
+		return this;
+	}
+	
+	/* Metrics */
+	
+	/* Replaces the crawler's own metrics, e.g. to share them between crawlers of the same context */
+	public Crawler<Uri> setMetrics(CrawlMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+	
+	/* Histograms take a fair amount of memory, so they're only allocated if the crawler doesn't share any */
+	public CrawlMetrics getMetrics() {
+		CrawlMetrics metrics = this.metrics;
+		if (metrics == null)
+			synchronized (this) {
+				if ((metrics = this.metrics) == null)
+					this.metrics = metrics = new CrawlMetrics(context);
+			}
+		return metrics;
+	}
+	
 	private final boolean validMatch(Match<Uri> match) {
 		if (match == null)
 			return false;
 		Uri uri = match.getUri();
-		boolean blacklisted = context.isBlacklisted(uri),
-				visited = context.wasVisited(uri), 
-				filtered = !context.isAllowed(uri);
-		if (blacklisted || visited || filtered) {
-			if (blacklisted)
-				logln("Ignored: %s (blacklisted)", uri);
-			else if (visited)
-				logln("Ignored: %s (pre-visited)", uri);
-			else if (filtered) 
-				logln("Ignored: %s (filtered)", uri);
+		if (context.isBlacklisted(uri)) {
+			getMetrics().blacklisted();
+			logln(Level.DEBUG, "Ignored: %s (blacklisted)", uri);
+			return false;
+		}
+		if (!context.isAllowed(uri)) {
+			getMetrics().filtered();
+			logln(Level.DEBUG, "Ignored: %s (filtered)", uri);
+			return false;
+		}
+		/* Claimed last, so that only URIs about to be visited are marked,
+		 * and atomically, so that two workers can't both visit it.
+		 */
+		if (!context.claim(uri)) {
+			getMetrics().revisited();
+			logln(Level.DEBUG, "Ignored: %s (pre-visited)", uri);
 			return false;
 		}
 		return true;
@@ -117,9 +254,9 @@ public abstract class Crawler<Uri> implements Callable<Void>, Loggeable {
 	}
 	
 	protected void onVisit(Uri uri) throws Exception {
-		logln("Visiting (%d/%d): %s", context.count(), context.storage().size(), uri);
-		context.markVisited(uri);
-		context.increment();
+		if (isLoggable(Level.INFO))	// avoids boxing the counts for nothing
+			logln(Level.INFO, "Visiting (%d/%d): %s", context.count(), context.pending(), uri);
+		context.increment();	// already marked visited when claimed
 	}
 	
 	protected void postCrawl() throws Exception {
@@ -155,13 +292,23 @@ public abstract class Crawler<Uri> implements Callable<Void>, Loggeable {
 	}
 	
 	private final void preVisit() throws Exception {
-		for (Action action : preVisit)
-			action.run();
+		if (!preVisit.isEmpty())
+			runTimed(preVisit);
 	}
 	
 	private final void postVisit() throws Exception {
-		for (Action action : postVisit)
-			action.run();
+		if (!postVisit.isEmpty())
+			runTimed(postVisit);
+	}
+	
+	private final void runTimed(List<Action> actions) throws Exception {
+		long start = System.nanoTime();
+		try {
+			for (Action action : actions)
+				action.run();
+		} finally {
+			getMetrics().record(Phase.HOOKS, System.nanoTime() - start);
+		}
 	}
 	
 	public void addPreVisit(Action runnable) {
@@ -185,6 +332,7 @@ public abstract class Crawler<Uri> implements Callable<Void>, Loggeable {
 	public static abstract class Builder<Uri, R> {
 		private Context<Uri> context;
 		private int maxDepth;
+		private boolean journaled;
 		
 		public Builder(Strategy strategy) {
 			context = Context.create(strategy);
@@ -200,7 +348,10 @@ public abstract class Crawler<Uri> implements Callable<Void>, Loggeable {
 			return this;
 		}
 		
+		/* Needs to be set before the journal, which is restored into the context */
 		public Builder<Uri, R> setContext(Context<Uri> context) {
+			if (journaled)
+				throw new IllegalStateException("Context needs to be set before the journal it's restored from");
 			this.context = context;
 			return this;
 		}
@@ -209,6 +360,13 @@ public abstract class Crawler<Uri> implements Callable<Void>, Loggeable {
 			return context;
 		}
 		
+		/* Resumes whatever crawl the journal recorded, see Context::restore */
+		public Builder<Uri, R> setJournal(Journal<Uri> journal) throws IOException {
+			context.restore(journal);
+			journaled = true;
+			return this;
+		}
+		
 		public Builder<Uri, R> setMaxDepth(int maxDepth) {
 			this.maxDepth = maxDepth;
 			return this;
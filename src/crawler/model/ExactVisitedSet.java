@@ -0,0 +1,42 @@
+package crawler.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Keeps every visited URI, so lookups are exact but memory
+ * grows with the number (and length) of visited URIs.
+ */
+public class ExactVisitedSet<Uri> implements VisitedSet<Uri> {
+	private final Set<Uri> visited;
+
+	public ExactVisitedSet(Collection<Uri> visited) {
+		this.visited = ConcurrentHashMap.newKeySet();
+		this.visited.addAll(visited);
+	}
+
+	public ExactVisitedSet() {
+		this(Collections.emptySet());
+	}
+
+	@Override
+	public boolean contains(Uri uri) {
+		return visited.contains(uri);
+	}
+
+	@Override
+	public boolean add(Uri uri) {
+		return visited.add(uri);
+	}
+
+	@Override
+	public int size() {
+		return visited.size();
+	}
+
+	@Override
+	public Set<Uri> asSet() {
+		return Collections.unmodifiableSet(visited);
+	}
+}
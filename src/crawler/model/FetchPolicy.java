@@ -0,0 +1,86 @@
+package crawler.model;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses how every URL gets fetched: through a browser, or through a
+ * plain HTTP request when pages are known to be static. URL patterns
+ * are tried first in the order they were added, then the host and its
+ * parent domains (e.g. {@code www.example.com} then {@code example.com}),
+ * and the fallback is used if nothing matched.
+ */
+public class FetchPolicy {
+	public static enum Backend {
+		BROWSER,
+		HTTP
+	}
+
+	private final Backend fallback;
+	private final Map<String, Backend> hosts;
+	private final List<Rule> patterns;
+
+	public FetchPolicy(Backend fallback) {
+		this.fallback = fallback;
+		hosts = new ConcurrentHashMap<>();
+		patterns = new CopyOnWriteArrayList<>();
+	}
+
+	/* Everything goes through a browser unless stated otherwise */
+	public static FetchPolicy browser() {
+		return new FetchPolicy(Backend.BROWSER);
+	}
+
+	/* Everything goes through plain HTTP requests unless stated otherwise */
+	public static FetchPolicy http() {
+		return new FetchPolicy(Backend.HTTP);
+	}
+
+	/* Applies to the host and all its subdomains */
+	public FetchPolicy host(String host, Backend backend) {
+		hosts.put(host.toLowerCase(Locale.ROOT), backend);
+		return this;
+	}
+
+	/* Applies to whole URLs matching the regular expression */
+	public FetchPolicy pattern(String regex, Backend backend) {
+		patterns.add(new Rule(Pattern.compile(regex), backend));
+		return this;
+	}
+
+	public Backend getFallback() {
+		return fallback;
+	}
+
+	public Backend choose(String uri) {
+		for (Rule rule : patterns)
+			if (rule.pattern.matcher(uri).matches())
+				return rule.backend;
+		if (!hosts.isEmpty())
+			for (String host = URLCanonicalizer.hostOf(uri); host != null; host = parentOf(host)) {
+				Backend backend = hosts.get(host);
+				if (backend != null)
+					return backend;
+			}
+		return fallback;
+	}
+
+	private static String parentOf(String host) {
+		int dot = host.indexOf('.');
+		return dot < 0 ? null : host.substring(dot + 1);
+	}
+
+	private static class Rule {
+		final Pattern pattern;
+		final Backend backend;
+
+		Rule(Pattern pattern, Backend backend) {
+			this.pattern = pattern;
+			this.backend = backend;
+		}
+	}
+}
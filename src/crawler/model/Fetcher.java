@@ -0,0 +1,20 @@
+package crawler.model;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Downloads a page and extracts its links, as used by {@link WebCrawler}
+ * to get the frontier of every URL it crawls.
+ * <p>
+ * Links are returned as found on the page, but resolved to absolute URLs,
+ * so they still need to go through a {@link URLCanonicalizer}.
+ */
+public interface Fetcher extends Closeable {
+
+	List<String> fetch(String uri) throws Exception;
+
+	/* Releases whatever the fetcher holds on to (e.g. a browser) */
+	@Override
+	default void close() {}
+}
@@ -0,0 +1,168 @@
+package crawler.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Memory-bounded visited set that only stores a 64-bit hash per URI
+ * in a lock-free open-addressing table (optionally off-heap), with a
+ * Bloom filter in front of it to answer most negative lookups.
+ * <p>
+ * Once the table holds {@code capacity} hashes, new URIs are only
+ * recorded in the Bloom filter so memory stays bounded, at the cost
+ * of a growing false-positive rate (see {@link #falsePositiveRate()}).
+ *
+ * @param <Uri> - hashed through its toString representation
+ */
+public class HashedVisitedSet<Uri> implements VisitedSet<Uri> {
+	private static final long EMPTY = 0L;
+	private static final int INSERTED = 0, PRESENT = 1, FULL = 2;
+	private static final double MAX_LOAD = 0.75;
+	private static final double TWO_POW_64 = Math.pow(2, 64);
+	private static final VarHandle DIRECT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private final int capacity, mask;
+	private final AtomicLongArray heap;
+	private final ByteBuffer direct;
+	private final BloomFilter bloom;
+	private final AtomicInteger size;
+	private volatile boolean overflowed;
+
+	public HashedVisitedSet(int capacity, int bloomBitsPerEntry, boolean offHeap) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity can only be strict positive integers");
+		long slots = Long.highestOneBit((long) Math.ceil(capacity / MAX_LOAD) * 2 - 1);
+		if (slots > (offHeap ? Integer.MAX_VALUE / Long.BYTES : 1 << 30))
+			throw new IllegalArgumentException("Capacity is too large: "+capacity);
+		this.capacity = capacity;
+		mask = (int) slots - 1;
+		if (offHeap) {
+			direct = ByteBuffer.allocateDirect((int) slots * Long.BYTES).order(ByteOrder.nativeOrder());
+			heap = null;
+		} else {
+			heap = new AtomicLongArray((int) slots);
+			direct = null;
+		}
+		bloom = new BloomFilter(capacity, bloomBitsPerEntry);
+		size = new AtomicInteger();
+	}
+
+	public HashedVisitedSet(int capacity, boolean offHeap) {
+		this(capacity, BloomFilter.DEFAULT_BITS_PER_ENTRY, offHeap);
+	}
+
+	public HashedVisitedSet(int capacity) {
+		this(capacity, false);
+	}
+
+	/* Slot access */
+
+	private long get(int slot) {
+		if (heap != null)
+			return heap.get(slot);
+		return (long) DIRECT.getVolatile(direct, slot * Long.BYTES);
+	}
+
+	private boolean claim(int slot, long hash) {
+		if (heap != null)
+			return heap.compareAndSet(slot, EMPTY, hash);
+		return DIRECT.compareAndSet(direct, slot * Long.BYTES, EMPTY, hash);
+	}
+
+	/* 0 marks empty slots so it can't be used as a hash */
+	private static long hashOf(Object uri) {
+		long hash = VisitedSet.hash(uri);
+		return hash == EMPTY ? 1L : hash;
+	}
+
+	private int slotOf(long hash) {
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	/* Set methods */
+
+	@Override
+	public boolean contains(Uri uri) {
+		long hash = hashOf(uri);
+		if (!bloom.mightContain(hash))
+			return false;
+		for (int slot = slotOf(hash);; slot = (slot + 1) & mask) {
+			long current = get(slot);
+			if (current == hash)
+				return true;
+			if (current == EMPTY)
+				return overflowed;	// only the Bloom filter knows about later URIs
+		}
+	}
+
+	@Override
+	public boolean add(Uri uri) {
+		long hash = hashOf(uri);
+		boolean fresh = bloom.put(hash);	// no bits changed means it might be present
+		if (!fresh && containsHash(hash))
+			return false;
+		switch (insert(hash)) {
+			case INSERTED: return true;
+			case PRESENT: return false;
+			default: return fresh;	// table is full, only the Bloom filter knows
+		}
+	}
+
+	private boolean containsHash(long hash) {
+		for (int slot = slotOf(hash);; slot = (slot + 1) & mask) {
+			long current = get(slot);
+			if (current == hash)
+				return true;
+			if (current == EMPTY)
+				return false;
+		}
+	}
+
+	private int insert(long hash) {
+		if (size.incrementAndGet() > capacity) {	// reserve room first
+			size.decrementAndGet();
+			overflowed = true;
+			return FULL;
+		}
+		for (int slot = slotOf(hash);; slot = (slot + 1) & mask) {
+			long current = get(slot);
+			if (current == EMPTY && claim(slot, hash))
+				return INSERTED;
+			if (current == EMPTY)
+				current = get(slot);	// lost the race, check who won
+			if (current == hash) {
+				size.decrementAndGet();
+				return PRESENT;
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	public boolean isOverflowed() {
+		return overflowed;
+	}
+
+	/**
+	 * Without overflow, a false positive needs a full 64-bit hash
+	 * collision. After overflow, lookups that miss the table fall
+	 * back to the Bloom filter.
+	 */
+	@Override
+	public double falsePositiveRate() {
+		if (overflowed)
+			return bloom.falsePositiveRate();
+		return bloom.falsePositiveRate() * size.get() / TWO_POW_64;
+	}
+
+	public long sizeInBytes() {
+		return (mask + 1L) * Long.BYTES + bloom.sizeInBytes();
+	}
+}
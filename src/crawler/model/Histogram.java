@@ -0,0 +1,129 @@
+package crawler.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent log-linear histogram of non-negative values (e.g. latencies
+ * in ns), in the spirit of HdrHistogram: every power of 2 is split into
+ * 16 linear sub-buckets, so recorded values keep ~6% precision over the
+ * whole long range with a fixed 960 buckets.
+ * <p>
+ * Recording is a single atomic increment (plus the sum and max) on a
+ * stripe picked by thread, so that concurrent threads rarely contend.
+ * Reading sums up the stripes, it's meant to be pulled now and then.
+ */
+public class Histogram {
+	private static final int SUB_BITS = 4, SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+	private static final int SUM = BUCKETS, MAX = BUCKETS + 1, SLOTS = BUCKETS + 2;
+	private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+	private final AtomicLongArray[] stripes;
+
+	public Histogram() {
+		stripes = new AtomicLongArray[STRIPES];
+		for (int i=0; i<STRIPES; i++)
+			stripes[i] = new AtomicLongArray(SLOTS);
+	}
+
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+		stripe.incrementAndGet(indexOf(value));
+		stripe.addAndGet(SUM, value);
+		for (long max; value > (max = stripe.get(MAX)) && !stripe.compareAndSet(MAX, max, value);)
+			;
+	}
+
+	/* Not atomic, values recorded meanwhile may be partially kept */
+	public void reset() {
+		for (AtomicLongArray stripe : stripes)
+			for (int i=0; i<SLOTS; i++)
+				stripe.set(i, 0);
+	}
+
+	/* Values below 16 get their own bucket, then 16 per power of 2 */
+	static int indexOf(long value) {
+		int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+		if (msb < SUB_BITS)
+			return (int) value;
+		int shift = msb - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	static long lowerBound(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int shift = index / SUB_BUCKETS - 1;
+		return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+	}
+
+	/* Middle of the bucket, so that errors go both ways */
+	static long valueOf(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int shift = index / SUB_BUCKETS - 1;
+		return lowerBound(index) + (1L << shift) / 2;
+	}
+
+	public Snapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		long count = 0, sum = 0, max = 0;
+		for (AtomicLongArray stripe : stripes) {
+			for (int i=0; i<BUCKETS; i++) {
+				long n = stripe.get(i);
+				counts[i] += n;
+				count += n;
+			}
+			sum += stripe.get(SUM);
+			max = Math.max(max, stripe.get(MAX));
+		}
+		return new Snapshot(counts, count, sum, max);
+	}
+
+	/* Consistent enough view of a histogram, as long as it was recording */
+	public static class Snapshot {
+		private final long[] counts;
+		private final long count, sum, max;
+
+		private Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		public double getMean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		/**
+		 * @param percentile - between 0 and 100
+		 * @return the value below which that percentage of values fall, 0 if empty
+		 */
+		public long getPercentile(double percentile) {
+			if (count == 0)
+				return 0;
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count)), seen = 0;
+			for (int i=0; i<counts.length; i++)
+				if ((seen += counts[i]) >= rank)
+					return Math.min(valueOf(i), max);
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count=%d mean=%.0f p50=%d p90=%d p99=%d max=%d",
+				count, getMean(), getPercentile(50), getPercentile(90), getPercentile(99), max);
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package crawler.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming scanner that picks the href attributes of {@code <a>} and
+ * {@code <area>} tags (and the first {@code <base>}) out of HTML as its
+ * bytes arrive, without building a document. Comments, doctypes and the
+ * contents of scripts and styles are skipped. Values are decoded as UTF-8,
+ * which is fine for any ASCII-compatible charset as far as URLs go.
+ * <p>
+ * Not thread-safe, there's one per response.
+ */
+final class HrefTokenizer {
+	private static final int MAX_NAME = 16, MAX_VALUE = 1 << 13;	// longer tag names and values are ignored
+	private static final int TEXT = 0, OPEN = 1, BANG = 2, COMMENT = 3, SKIP = 4,
+		NAME = 5, ATTRS = 6, ATTR = 7, AFTER_ATTR = 8, BEFORE_VALUE = 9,
+		QUOTED = 10, UNQUOTED = 11, RAW = 12;
+	private static final int OTHER = 0, ANCHOR = 1, BASE = 2, SCRIPT = 3, STYLE = 4;
+
+	private final StringBuilder name = new StringBuilder(MAX_NAME);
+	private final ByteArrayOutputStream value = new ByteArrayOutputStream(256);
+	private final List<String> hrefs = new ArrayList<>();
+	private String base;
+	private int state = TEXT, tag, quote, dashes, matched;
+	private boolean href;
+	private byte[] closing;		// end tag of the raw text being skipped
+
+	void feed(ByteBuffer buffer) {
+		while (buffer.hasRemaining())
+			next(buffer.get() & 0xFF);
+	}
+
+	/* Hrefs in the order they were found, as written in the page */
+	List<String> hrefs() {
+		return hrefs;
+	}
+
+	/* Href of the first base tag, null if there's none */
+	String base() {
+		return base;
+	}
+
+	private void next(int c) {
+		switch (state) {
+			case TEXT:
+				if (c == '<')
+					state = OPEN;
+				break;
+			case OPEN:
+				if (isLetter(c)) {
+					name.setLength(0);
+					name.append((char) lower(c));
+					state = NAME;
+				} else if (c == '!') {
+					dashes = 0;
+					state = BANG;
+				} else if (c == '/' || c == '?')
+					state = SKIP;	// end tags and processing instructions
+				else if (c != '<')
+					state = TEXT;
+				break;
+			case BANG:
+				if (c == '-' && ++dashes == 2) {
+					dashes = 0;
+					state = COMMENT;
+				} else if (c != '-')
+					state = c == '>' ? TEXT : SKIP;
+				break;
+			case COMMENT:
+				if (c == '>' && dashes >= 2)
+					state = TEXT;
+				else
+					dashes = c == '-' ? dashes + 1 : 0;
+				break;
+			case SKIP:
+				if (c == '>')
+					state = TEXT;
+				break;
+			case NAME:
+				if (c == '>')
+					endTag(startTag());
+				else if (isSpace(c) || c == '/') {
+					tag = startTag();
+					state = ATTRS;
+				} else if (name.length() < MAX_NAME)
+					name.append((char) lower(c));
+				break;
+			case ATTRS:
+				if (c == '>')
+					endTag(tag);
+				else if (!isSpace(c) && c != '/')
+					startAttribute(c);
+				break;
+			case ATTR:
+				if (c == '=')
+					state = BEFORE_VALUE;
+				else if (c == '>')
+					endTag(tag);
+				else if (isSpace(c))
+					state = AFTER_ATTR;
+				else if (c == '/')
+					state = ATTRS;
+				else if (name.length() < MAX_NAME)
+					name.append((char) lower(c));
+				break;
+			case AFTER_ATTR:
+				if (c == '=')
+					state = BEFORE_VALUE;
+				else if (c == '>')
+					endTag(tag);
+				else if (!isSpace(c))
+					startAttribute(c);
+				break;
+			case BEFORE_VALUE:
+				href = (tag == ANCHOR || tag == BASE) && name.toString().equals("href");
+				value.reset();
+				if (c == '"' || c == '\'') {
+					quote = c;
+					state = QUOTED;
+				} else if (c == '>')
+					endTag(tag);
+				else if (!isSpace(c)) {
+					append(c);
+					state = UNQUOTED;
+				}
+				break;
+			case QUOTED:
+				if (c == quote) {
+					endValue();
+					state = ATTRS;
+				} else
+					append(c);
+				break;
+			case UNQUOTED:
+				if (isSpace(c) || c == '>') {
+					endValue();
+					if (c == '>')
+						endTag(tag);
+					else
+						state = ATTRS;
+				} else
+					append(c);
+				break;
+			case RAW:
+				if (lower(c) == closing[matched]) {
+					if (++matched == closing.length)
+						state = SKIP;
+				} else
+					matched = c == '<' ? 1 : 0;
+				break;
+		}
+	}
+
+	private int startTag() {
+		switch (name.toString()) {
+			case "a":
+			case "area":
+				return ANCHOR;
+			case "base":
+				return BASE;
+			case "script":
+				return SCRIPT;
+			case "style":
+				return STYLE;
+			default:
+				return OTHER;
+		}
+	}
+
+	private void endTag(int tag) {
+		if (tag == SCRIPT || tag == STYLE) {
+			closing = (tag == SCRIPT ? "</script" : "</style").getBytes(StandardCharsets.US_ASCII);
+			matched = 0;
+			state = RAW;
+		} else
+			state = TEXT;
+	}
+
+	private void startAttribute(int c) {
+		name.setLength(0);
+		name.append((char) lower(c));
+		state = ATTR;
+	}
+
+	private void append(int c) {
+		if (href && value.size() < MAX_VALUE)
+			value.write(c);
+	}
+
+	private void endValue() {
+		if (!href || value.size() >= MAX_VALUE)
+			return;
+		String url = unescape(new String(value.toByteArray(), StandardCharsets.UTF_8).strip());
+		if (tag == BASE) {
+			if (base == null)
+				base = url;
+		} else if (!url.isEmpty())
+			hrefs.add(url);
+	}
+
+	/* Only character references, named ones are limited to the usual suspects */
+	private static String unescape(String text) {
+		int amp = text.indexOf('&');
+		if (amp < 0)
+			return text;
+		StringBuilder sb = new StringBuilder(text.length());
+		sb.append(text, 0, amp);
+		for (int i=amp; i<text.length(); i++) {
+			char c = text.charAt(i);
+			int end = c == '&' ? text.indexOf(';', i) : -1;
+			if (end < 0 || end - i > 10) {
+				sb.append(c);
+				continue;
+			}
+			String entity = text.substring(i + 1, end);
+			int code = -1;
+			try {
+				if (entity.startsWith("#x") || entity.startsWith("#X"))
+					code = Integer.parseInt(entity.substring(2), 16);
+				else if (entity.startsWith("#"))
+					code = Integer.parseInt(entity.substring(1));
+			} catch (NumberFormatException e) {}
+			switch (entity) {
+				case "amp": code = '&'; break;
+				case "quot": code = '"'; break;
+				case "apos": code = '\''; break;
+				case "lt": code = '<'; break;
+				case "gt": code = '>'; break;
+			}
+			if (code < 0 || !Character.isValidCodePoint(code))
+				sb.append(c);
+			else {
+				sb.appendCodePoint(code);
+				i = end;
+			}
+		}
+		return sb.toString();
+	}
+
+	private static boolean isLetter(int c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+	}
+
+	private static boolean isSpace(int c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+	}
+
+	private static int lower(int c) {
+		return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+	}
+}
@@ -0,0 +1,186 @@
+package crawler.model;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fetches pages through plain HTTP GET requests, which is way cheaper
+ * than a browser for static pages but misses links added by scripts.
+ * <p>
+ * Responses are scanned for links as they're downloaded (see
+ * {@link HrefTokenizer}), so pages are never held in memory, and the
+ * download stops after {@code maxBytes}. Redirects are followed, and
+ * links are resolved against the final URL (or the page's base tag).
+ * Error responses and non-HTML content have no links.
+ * <p>
+ * Thread-safe, a single one can (and should) be shared by all crawlers
+ * so that they share the same connections.
+ */
+public class HttpFetcher implements Fetcher {
+	public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+	public static final long DEFAULT_MAX_BYTES = 1 << 21;
+	public static final String DEFAULT_USER_AGENT = "Mozilla/5.0 (compatible; SSF crawler)";
+
+	private final HttpClient client;
+	private final Duration timeout;
+	private final long maxBytes;
+	private final String userAgent;
+
+	public HttpFetcher(Duration timeout, long maxBytes, String userAgent) {
+		this.timeout = timeout;
+		this.maxBytes = maxBytes;
+		this.userAgent = userAgent;
+		client = HttpClient.newBuilder()
+			.followRedirects(Redirect.NORMAL)
+			.connectTimeout(timeout)
+			.build();
+	}
+
+	public HttpFetcher(Duration timeout) {
+		this(timeout, DEFAULT_MAX_BYTES, DEFAULT_USER_AGENT);
+	}
+
+	public HttpFetcher() {
+		this(DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Waits for the whole page for at most the timeout.
+	 * @throws TimeoutException if it took longer, the request is then cancelled
+	 */
+	@Override
+	public List<String> fetch(String uri) throws Exception {
+		CompletableFuture<List<String>> links = fetchAsync(uri);
+		try {
+			return links.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		} catch (TimeoutException | InterruptedException e) {
+			links.cancel(true);
+			throw e;
+		}
+	}
+
+	public CompletableFuture<List<String>> fetchAsync(String uri) {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(uri))
+			.timeout(timeout)
+			.header("User-Agent", userAgent)
+			.header("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.1")
+			.GET()
+			.build();
+		return client.sendAsync(request, this::subscriber)
+			.thenApply(HttpFetcher::resolve);
+	}
+
+	private BodySubscriber<HrefTokenizer> subscriber(ResponseInfo info) {
+		if (info.statusCode() / 100 != 2 || !isHtml(info))
+			return BodySubscribers.replacing(null);	// discards the body
+		return new LinkSubscriber(maxBytes);
+	}
+
+	private static boolean isHtml(ResponseInfo info) {
+		String type = info.headers()
+			.firstValue("Content-Type")
+			.orElse("text/html")
+			.toLowerCase(Locale.ROOT);
+		return type.contains("html") || type.contains("xml");
+	}
+
+	/* Makes links absolute, dropping the ones that aren't valid URIs */
+	private static List<String> resolve(HttpResponse<HrefTokenizer> response) {
+		HrefTokenizer tokenizer = response.body();
+		if (tokenizer == null)
+			return new ArrayList<>();
+		URI base = response.uri();
+		try {
+			if (tokenizer.base() != null)
+				base = base.resolve(tokenizer.base());
+		} catch (IllegalArgumentException e) { /* ignored like browsers do */ }
+		List<String> links = new ArrayList<>(tokenizer.hrefs().size());
+		for (String href : tokenizer.hrefs()) {
+			try {
+				links.add(base.resolve(href).toString());
+			} catch (IllegalArgumentException e) { /* invalid link */ }
+		}
+		return links;
+	}
+
+	public Duration getTimeout() {
+		return timeout;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public String getUserAgent() {
+		return userAgent;
+	}
+
+	/* Feeds the tokenizer one chunk at a time, as they arrive */
+	private static class LinkSubscriber implements BodySubscriber<HrefTokenizer> {
+		private final CompletableFuture<HrefTokenizer> body = new CompletableFuture<>();
+		private final HrefTokenizer tokenizer = new HrefTokenizer();
+		private final long maxBytes;
+		private Flow.Subscription subscription;
+		private long received;
+
+		LinkSubscriber(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		@Override
+		public CompletionStage<HrefTokenizer> getBody() {
+			return body;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			for (ByteBuffer buffer : buffers) {
+				received += buffer.remaining();
+				tokenizer.feed(buffer);
+			}
+			if (received < maxBytes)
+				subscription.request(1);
+			else {
+				subscription.cancel();	// only the first maxBytes are scanned
+				body.complete(tokenizer);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			body.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			body.complete(tokenizer);
+		}
+	}
+}
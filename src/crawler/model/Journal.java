@@ -0,0 +1,484 @@
+package crawler.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import crawler.model.Context.Match;
+
+/**
+ * Append-only write-ahead log of the push, pop, done and visit events
+ * of a {@link Context}, so that a crawl can resume where it stopped
+ * after a crash (see {@link Context#restore(Journal)}).
+ * <p>
+ * Recording an event only enqueues it, a single daemon thread writes
+ * them in batches, flushing every {@code flushDelay} and syncing to
+ * disk every {@code syncDelay}, so at most that much can be lost on a
+ * crash. Up to {@code capacity} events can be queued, recording blocks
+ * past that until the writer catches up.
+ * <p>
+ * Visited URIs are appended to a separate {@code .visited} file, which
+ * is only ever streamed back into the context's visited set, so the
+ * journal doesn't keep them in memory. The frontier log is compacted
+ * once it holds way more records than the live frontier: rewritten
+ * with only the elements still pushed or in flight (which the writer
+ * keeps in memory), then swapped in atomically.
+ *
+ * @param <Uri> - written and read back through the given codec
+ */
+public class Journal<Uri> implements Closeable {
+	public static final long DEFAULT_FLUSH_DELAY = 50, DEFAULT_SYNC_DELAY = 1000;	// ms
+	public static final long DEFAULT_COMPACTION_THRESHOLD = 1 << 20;				// records
+	public static final int DEFAULT_CAPACITY = 1 << 16;							// events
+	private static final byte PUSH = 1, POP = 2, DONE = 3, VISIT = 4;
+	private static final byte MARK = 5;	// visit that isn't claimed by an element, never written as is
+
+	private final Path file, visitFile;
+	private final Codec<Uri> codec;
+	private BlockingQueue<Event<Uri>> events;
+	private long flushDelay, syncDelay, compactionThreshold;
+	private int capacity;
+	private volatile boolean closed;
+	private volatile IOException failure;
+	private Thread writer, hook;
+
+	// Only used by the writer thread once recovered
+	private FileOutputStream stream, visitStream;
+	private DataOutputStream out, visitOut;
+	private Frontier frontier;
+	private long records, liveRecords;
+
+	public Journal(Path file, Codec<Uri> codec) {
+		this.file = file;
+		visitFile = file.resolveSibling(file.getFileName()+".visited");
+		this.codec = codec;
+		flushDelay = DEFAULT_FLUSH_DELAY;
+		syncDelay = DEFAULT_SYNC_DELAY;
+		compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+		capacity = DEFAULT_CAPACITY;
+	}
+
+	/* Settings, need to be set before recovering */
+
+	public Journal<Uri> setFlushDelay(long millis) {
+		flushDelay = millis;
+		return this;
+	}
+
+	public long getFlushDelay() {
+		return flushDelay;
+	}
+
+	public Journal<Uri> setSyncDelay(long millis) {
+		syncDelay = millis;
+		return this;
+	}
+
+	public long getSyncDelay() {
+		return syncDelay;
+	}
+
+	/* Minimum number of records before compacting, it also waits for
+	 * the log to be twice as large as the live state. */
+	public Journal<Uri> setCompactionThreshold(long records) {
+		compactionThreshold = records;
+		return this;
+	}
+
+	public long getCompactionThreshold() {
+		return compactionThreshold;
+	}
+
+	/* Max number of events waiting to be written before recording blocks */
+	public Journal<Uri> setCapacity(int events) {
+		if (events <= 0)
+			throw new IllegalArgumentException("Capacity can only be strict positive integers");
+		capacity = events;
+		return this;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	public Path getVisitFile() {
+		return visitFile;
+	}
+
+	/* Recording (called by Context) */
+
+	void push(Match<Uri> match) {
+		record(new Event<>(PUSH, match.getDepth(), match.getUri()));
+	}
+
+	void pop(Match<Uri> match) {
+		record(new Event<>(POP, match.getDepth(), match.getUri()));
+	}
+
+	void done(Match<Uri> match) {
+		record(new Event<>(DONE, match.getDepth(), match.getUri()));
+	}
+
+	/* Claimed by an element being crawled, only counts once it's done */
+	void visit(Uri uri) {
+		record(new Event<>(VISIT, 0, uri));
+	}
+
+	/* Marked visited outside of crawling, counts right away */
+	void mark(Uri uri) {
+		record(new Event<>(MARK, 0, uri));
+	}
+
+	/* Wakes the writer up early once half full, and waits for it when full.
+	 * Events can't be dropped, so interrupts only apply once recorded. 
+	 * Once closed, events are ignored rather than failing late workers. */
+	private void record(Event<Uri> event) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				if (failure != null)
+					throw new UncheckedIOException("Journal stopped after failing to write", failure);
+				if (closed)
+					return;
+				if (events.offer(event)) {
+					if (events.size() >= capacity / 2)
+						LockSupport.unpark(writer);
+					return;
+				}
+				LockSupport.unpark(writer);
+				try {
+					if (events.offer(event, flushDelay, TimeUnit.MILLISECONDS))
+						return;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/* Recovery */
+
+	/**
+	 * Replays the log (if any) and starts recording. Visited URIs are
+	 * streamed to the given consumer (e.g. the context's visited set)
+	 * rather than kept in memory. Elements that were popped without
+	 * being done (e.g. being crawled during the crash) are put back in
+	 * the frontier, and URIs they claimed aren't visited anymore unless
+	 * another element of the same URI was done. A torn record at the
+	 * end is ignored.
+	 */
+	public synchronized State<Uri> recover(Consumer<? super Uri> visited) throws IOException {
+		if (writer != null)
+			throw new IllegalStateException("Journal was already recovered");
+		frontier = replay();
+		int inFlight = frontier.requeue();
+		int visits = replayVisits(visited);
+		State<Uri> state = new State<>(frontier.elements(), visits, inFlight);
+		rewrite();
+		visitStream = new FileOutputStream(visitFile.toFile(), true);
+		visitOut = new DataOutputStream(new BufferedOutputStream(visitStream, 1 << 16));
+		events = new LinkedBlockingQueue<>(capacity);
+		writer = new Thread(this::run, "Journal writer: "+file.getFileName());
+		writer.setDaemon(true);
+		writer.start();
+		hook = new Thread(this::stop);	// flushes pending events on normal exits
+		Runtime.getRuntime().addShutdownHook(hook);
+		return state;
+	}
+
+	private Frontier replay() throws IOException {
+		Frontier frontier = new Frontier();
+		if (!Files.exists(file))
+			return frontier;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			for (int type; (type = in.read()) >= 0;) {
+				if (type < PUSH || type > DONE)
+					break;	// corrupted tail
+				try {
+					int depth = in.readInt();
+					frontier.apply((byte) type, Match.of(depth, codec.read(in)));
+				} catch (IOException e) {
+					break;	// torn record
+				}
+			}
+		}
+		return frontier;
+	}
+
+	/* Cuts a torn record off the end, so that appending starts from a valid one */
+	private int replayVisits(Consumer<? super Uri> visited) throws IOException {
+		if (!Files.exists(visitFile))
+			return 0;
+		int visits = 0;
+		long valid = 0;
+		try (CountingStream counter = new CountingStream(new BufferedInputStream(Files.newInputStream(visitFile)));
+			DataInputStream in = new DataInputStream(counter)) {
+			while (in.read() == VISIT) {
+				Uri uri;
+				try {
+					uri = codec.read(in);
+				} catch (IOException e) {
+					break;	// torn record
+				}
+				visited.accept(uri);
+				visits++;
+				valid = counter.count;
+			}
+		}
+		try (FileChannel channel = FileChannel.open(visitFile, StandardOpenOption.WRITE)) {
+			if (channel.size() > valid)
+				channel.truncate(valid);
+		}
+		return visits;
+	}
+
+	/* Writes the live frontier aside, then swaps it in and appends from there */
+	private void rewrite() throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName()+".tmp");
+		long count = 0;
+		try (FileOutputStream stream = new FileOutputStream(temporary.toFile());
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+			for (Map.Entry<Match<Uri>, int[]> entry : frontier.live.entrySet()) {
+				Match<Uri> match = entry.getKey();
+				int[] counts = entry.getValue();
+				for (int i=0; i<counts[0]; i++)
+					write(out, PUSH, match.getDepth(), match.getUri());
+				for (int i=0; i<counts[1]; i++)
+					write(out, POP, match.getDepth(), match.getUri());
+				count += counts[0] + counts[1];
+			}
+			out.flush();
+			stream.getChannel().force(true);
+		}
+		if (this.stream != null)
+			this.stream.close();
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		stream = new FileOutputStream(file.toFile(), true);
+		out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+		records = liveRecords = count;
+	}
+
+	private void write(DataOutputStream out, byte type, int depth, Uri uri) throws IOException {
+		out.writeByte(type);
+		if (type != VISIT)
+			out.writeInt(depth);
+		codec.write(out, uri);
+	}
+
+	/* Writer thread */
+
+	/* The frontier log is flushed and synced before visits, so that a visit
+	 * is never on disk without the children pushed while it was crawled. */
+	private void run() {
+		long lastSync = System.nanoTime();
+		try {
+			while (true) {
+				boolean stopping = closed;	// read first so events recorded before closing get written
+				for (Event<Uri> event; (event = events.poll()) != null;)
+					apply(event);
+				out.flush();
+				visitOut.flush();
+				if (stopping)
+					break;
+				if (System.nanoTime() - lastSync >= TimeUnit.MILLISECONDS.toNanos(syncDelay)) {
+					stream.getChannel().force(false);
+					visitStream.getChannel().force(false);
+					lastSync = System.nanoTime();
+				}
+				if (records > Math.max(compactionThreshold, 2 * liveRecords)) {
+					out.close();
+					rewrite();
+				}
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushDelay));
+			}
+			stream.getChannel().force(false);
+			visitStream.getChannel().force(false);
+		} catch (IOException e) {
+			failure = e;
+		} finally {
+			try { out.close(); }
+			catch (IOException e) { if (failure == null) failure = e; }
+			try { visitOut.close(); }
+			catch (IOException e) { if (failure == null) failure = e; }
+		}
+	}
+
+	/* Claimed URIs are only written as visited once an element of theirs is done */
+	private void apply(Event<Uri> event) throws IOException {
+		if (event.type == VISIT)
+			frontier.claimed.add(event.uri);
+		else if (event.type == MARK)
+			write(visitOut, VISIT, 0, event.uri);
+		else {
+			write(out, event.type, event.depth, event.uri);
+			records++;
+			frontier.apply(event.type, Match.of(event.depth, event.uri));
+			if (event.type == DONE && frontier.claimed.remove(event.uri))
+				write(visitOut, VISIT, 0, event.uri);
+		}
+	}
+
+	private void stop() {
+		closed = true;
+		Thread writer = this.writer;
+		if (writer == null)
+			return;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes and syncs every event recorded so far, then stops recording:
+	 * events recorded afterwards (e.g. by workers still finishing) are
+	 * ignored, and will be replayed from the last ones written.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed)
+			return;
+		stop();
+		if (hook != null) {
+			try { Runtime.getRuntime().removeShutdownHook(hook); }
+			catch (IllegalStateException e) {}	// already shutting down
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	/* Live frontier rebuilt from the log, then kept up to date by the writer */
+
+	private class Frontier {
+		final Map<Match<Uri>, int[]> live = new LinkedHashMap<>();	// {pushed, popped} not done yet
+		final Set<Uri> claimed = new HashSet<>();	// visited by elements still in flight
+
+		void apply(byte type, Match<Uri> match) {
+			int[] counts = live.computeIfAbsent(match, key -> new int[2]);
+			if (type == PUSH)
+				counts[0]++;
+			else if (type == POP)
+				counts[1]++;
+			else {
+				counts[0]--;
+				counts[1]--;
+			}
+			if (counts[0] <= 0 && counts[1] <= 0)
+				live.remove(match);
+		}
+
+		/* Puts in-flight elements back in the frontier (as if never popped) */
+		int requeue() {
+			int inFlight = 0;
+			for (int[] counts : live.values()) {
+				inFlight += counts[1];
+				counts[1] = 0;
+			}
+			return inFlight;
+		}
+
+		List<Match<Uri>> elements() {
+			List<Match<Uri>> elements = new ArrayList<>();
+			for (Map.Entry<Match<Uri>, int[]> entry : live.entrySet())
+				for (int i=0; i<entry.getValue()[0]; i++)
+					elements.add(entry.getKey());
+			return elements;
+		}
+	}
+
+	/* Counts the bytes actually consumed, unlike the buffered stream underneath */
+	private static class CountingStream extends FilterInputStream {
+		long count;
+
+		CountingStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				count++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			int n = super.read(bytes, offset, length);
+			if (n > 0)
+				count += n;
+			return n;
+		}
+	}
+
+	public static class State<Uri> {
+		private final List<Match<Uri>> frontier;
+		private final int visits, inFlight;
+
+		private State(List<Match<Uri>> frontier, int visits, int inFlight) {
+			this.frontier = Collections.unmodifiableList(frontier);
+			this.visits = visits;
+			this.inFlight = inFlight;
+		}
+
+		/** Elements still to be crawled, in the order they were pushed */
+		public List<Match<Uri>> getFrontier() {
+			return frontier;
+		}
+
+		/** Number of URIs streamed to the visited set */
+		public int getVisits() {
+			return visits;
+		}
+
+		/** Elements that were being crawled during the crash, now back in the frontier */
+		public int getInFlight() {
+			return inFlight;
+		}
+	}
+
+	private static class Event<Uri> {
+		final byte type;
+		final int depth;
+		final Uri uri;
+
+		Event(byte type, int depth, Uri uri) {
+			this.type = type;
+			this.depth = depth;
+			this.uri = uri;
+		}
+	}
+}
@@ -3,46 +3,80 @@ package crawler.model;
 import java.util.Collection;
 import java.util.Queue;
 import java.util.Stack;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
 
 /* Thread-safe linear storage to allow using a Queue (FIFO)
  * or Stack (LIFO) as backend to generically implement
  * Depth-first search and Breadth-first search.
  */
-public class LinearStorage<V> {
-	private Collection<V> collection;
-	private Consumer<V> pusher;
-	private Supplier<V> popper;
-	
-	private LinearStorage(Consumer<V> pusher, Supplier<V> popper, Collection<V> collection) {
-		this.pusher = pusher;
-		this.popper = popper;
-		this.collection = collection;
-	}
-	
-	public LinearStorage(Queue<V> queue) {
-		this(queue::offer, queue::poll, queue);
+public interface LinearStorage<V> {
+
+	boolean isEmpty();
+
+	int size();
+
+	LinearStorage<V> push(V e);
+
+	/**
+	 * Atomic, so there's no need to check isEmpty() beforehand (which
+	 * another thread could make stale before popping anyway).
+	 * @return the next element, or null if the storage is empty
+	 */
+	V pop();
+
+	/**
+	 * Pushes the elements in order, as push() would one by one, but
+	 * implementations take their lock (or do their CAS) once per batch.
+	 */
+	default LinearStorage<V> pushAll(Collection<? extends V> elements) {
+		for (V e : elements)
+			push(e);
+		return this;
 	}
-	
-	public LinearStorage(Stack<V> stack) {
-		this(stack::push, stack::pop, stack);
+
+	/**
+	 * Pops up to max elements into the buffer, in the order pop() would
+	 * have returned them. Storages that hold elements back may hand out
+	 * fewer (or none) even though they aren't empty.
+	 * @return the number of elements added to the buffer
+	 */
+	default int drainTo(Collection<? super V> buffer, int max) {
+		int n = 0;
+		for (V e; n < max && (e = pop()) != null; n++)
+			buffer.add(e);
+		return n;
 	}
-	
-	public synchronized boolean isEmpty() {
-		return collection.isEmpty();
+
+	/**
+	 * Called once a popped element has been crawled, for storages that
+	 * hold elements back while others are in flight.
+	 * @return true if it made elements available to pop
+	 */
+	default boolean done(V e) {
+		return false;
 	}
-	
-	public synchronized int size() {
-		return collection.size();
+
+	/**
+	 * @return how long (in ms) until pop() can return an element: 0 if it
+	 * already can, Long.MAX_VALUE if it can't until elements are pushed
+	 * or done
+	 */
+	default long readyIn() {
+		return isEmpty() ? Long.MAX_VALUE : 0;
 	}
-	
-	public synchronized LinearStorage<V> push(V e) {
-		pusher.accept(e);
-		return this;
+
+	/**
+	 * Called by a thread that won't push nor pop anymore (e.g. a worker
+	 * that terminates), for storages that keep state per thread.
+	 */
+	default void leave() {}
+
+	/* Factory methods */
+
+	static <V> LinearStorage<V> of(Queue<V> queue) {
+		return new SynchronisedStorage<>(queue);
 	}
-	
-	public synchronized V pop() {
-		return popper.get();
+
+	static <V> LinearStorage<V> of(Stack<V> stack) {
+		return new SynchronisedStorage<>(stack);
 	}
 }
@@ -0,0 +1,229 @@
+package crawler.model;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.IllegalFormatException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import browser.common.Constants;
+
+/**
+ * Asynchronous logging backend behind {@link Loggeable}, so that logging
+ * doesn't serialise crawler threads on the lock of the output stream.
+ * <p>
+ * Messages are enqueued unformatted into a bounded lock-free ring buffer
+ * of pre-allocated entries (claimed with a CAS, then published), and a
+ * single daemon thread formats and writes them in batches. Disabled
+ * levels return right away, and messages are dropped (then counted in
+ * the output) rather than blocking when the buffer is full. Arguments
+ * are formatted later, so they shouldn't be mutated after logging them.
+ * <p>
+ * The level can be changed at runtime, it defaults to the {@code
+ * ssf.log.level} system property, or INFO (OFF if not VERBOSE).
+ */
+public final class Log {
+	public static enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+
+	public static final int DEFAULT_CAPACITY = 1 << 14;	// entries, rounded up to a power of 2
+	private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final int VARARGS = -1;
+
+	private static final Entry[] entries;
+	private static final int mask;
+	private static final AtomicLong claimed = new AtomicLong(), dropped = new AtomicLong();
+	private static volatile long consumed;
+	private static volatile Level level = initialLevel();
+	private static volatile PrintStream out = System.out;
+
+	static {
+		int capacity = Integer.highestOneBit(Math.max(2, Integer.getInteger("ssf.log.capacity", DEFAULT_CAPACITY) * 2 - 1));
+		entries = new Entry[capacity];
+		for (int i=0; i<capacity; i++)
+			entries[i] = new Entry();
+		mask = capacity - 1;
+		Thread writer = new Thread(Log::run, "Log writer");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000)));
+	}
+
+	private Log() {}
+
+	/* Settings */
+
+	public static void setLevel(Level level) {
+		Log.level = level;
+	}
+
+	public static Level getLevel() {
+		return level;
+	}
+
+	public static boolean isEnabled(Level level) {
+		return level.compareTo(Log.level) >= 0 && level != Level.OFF;
+	}
+
+	public static void setOutput(PrintStream out) {
+		Log.out = out;
+	}
+
+	/* Messages that were dropped because the buffer was full */
+	public static long dropped() {
+		return dropped.get();
+	}
+
+	private static Level initialLevel() {
+		if (!Constants.VERBOSE)
+			return Level.OFF;
+		String property = System.getProperty("ssf.log.level");
+		try {
+			return property == null ? Level.INFO : Level.valueOf(property.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			return Level.INFO;
+		}
+	}
+
+	/* Enqueuing, the fixed arities avoid allocating an array per message */
+
+	static void log(Level level, Object source, boolean newline, String format) {
+		if (isEnabled(level))
+			enqueue(source, newline, format, 0, null, null, null, null);
+	}
+
+	static void log(Level level, Object source, boolean newline, String format, Object a) {
+		if (isEnabled(level))
+			enqueue(source, newline, format, 1, a, null, null, null);
+	}
+
+	static void log(Level level, Object source, boolean newline, String format, Object a, Object b) {
+		if (isEnabled(level))
+			enqueue(source, newline, format, 2, a, b, null, null);
+	}
+
+	static void log(Level level, Object source, boolean newline, String format, Object a, Object b, Object c) {
+		if (isEnabled(level))
+			enqueue(source, newline, format, 3, a, b, c, null);
+	}
+
+	static void log(Level level, Object source, boolean newline, String format, Object...args) {
+		if (isEnabled(level))
+			enqueue(source, newline, format, VARARGS, null, null, null, args);
+	}
+
+	private static void enqueue(Object source, boolean newline, String format, int arity, Object a, Object b, Object c, Object[] args) {
+		long sequence;
+		do {
+			sequence = claimed.get();
+			if (sequence - consumed >= entries.length) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while (!claimed.compareAndSet(sequence, sequence + 1));
+		Entry entry = entries[(int) sequence & mask];
+		entry.source = source;
+		entry.newline = newline;
+		entry.format = format;
+		entry.arity = arity;
+		entry.a = a;
+		entry.b = b;
+		entry.c = c;
+		entry.args = args;
+		entry.sequence = sequence;	// publishes the entry
+	}
+
+	/**
+	 * Waits for every message enqueued so far to be written, for at most
+	 * the given time.
+	 * @return true if they all were
+	 */
+	public static boolean flush(long millis) {
+		long target = claimed.get(), deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+		while (consumed < target) {
+			if (System.nanoTime() - deadline >= 0)
+				return false;
+			LockSupport.parkNanos(IDLE_PARK);
+		}
+		return true;
+	}
+
+	/* Writer thread */
+
+	private static void run() {
+		StringBuilder sb = new StringBuilder(1 << 12);
+		Formatter formatter = new Formatter(sb);
+		Object[][] arrays = { {}, new Object[1], new Object[2], new Object[3] };
+		long sequence = consumed, reported = 0;
+		while (true) {
+			int batch = 0;
+			for (Entry entry; (entry = entries[(int) sequence & mask]).sequence == sequence; sequence++, batch++) {
+				format(sb, formatter, arrays, entry);
+				entry.clear();
+				consumed = sequence + 1;
+				if (sb.length() >= 1 << 16)
+					write(sb);
+			}
+			long lost = dropped.get();
+			if (lost != reported) {
+				sb.append("Log\t| Dropped ").append(lost - reported).append(" messages").append(System.lineSeparator());
+				reported = lost;
+			}
+			if (sb.length() > 0)
+				write(sb);
+			if (batch == 0)
+				LockSupport.parkNanos(IDLE_PARK);
+		}
+	}
+
+	private static void format(StringBuilder sb, Formatter formatter, Object[][] arrays, Entry entry) {
+		int start = sb.length();
+		Object[] args = entry.args;
+		if (entry.arity != VARARGS) {
+			args = arrays[entry.arity];
+			if (entry.arity > 2)
+				args[2] = entry.c;
+			if (entry.arity > 1)
+				args[1] = entry.b;
+			if (entry.arity > 0)
+				args[0] = entry.a;
+		}
+		try {
+			sb.append(entry.source).append("\t| ");
+			formatter.format(entry.format, args);
+		} catch (IllegalFormatException | NullPointerException e) {
+			sb.setLength(start);
+			sb.append(entry.source).append("\t| ").append(entry.format).append(" (").append(e).append(')');
+		} finally {
+			if (args != entry.args)
+				Arrays.fill(args, null);	// don't hold on to arguments
+		}
+		if (entry.newline)
+			sb.append(System.lineSeparator());
+	}
+
+	private static void write(StringBuilder sb) {
+		PrintStream out = Log.out;
+		out.append(sb);
+		out.flush();
+		sb.setLength(0);
+	}
+
+	private static final class Entry {
+		volatile long sequence = -1;
+		Object source;
+		boolean newline;
+		String format;
+		int arity;
+		Object a, b, c;
+		Object[] args;
+
+		void clear() {
+			source = a = b = c = null;
+			args = null;
+			format = null;
+		}
+	}
+}
@@ -1,16 +1,74 @@
 package crawler.model;
 
-import browser.common.Constants;
+import crawler.model.Log.Level;
 
-/* Logging methods */
+/* Logging methods, messages go through the asynchronous Log backend.
+ * Level-less methods log at INFO, and the fixed arities don't allocate
+ * anything when their level is disabled.
+ */
 public interface Loggeable {
 	
+	default boolean isLoggable(Level level) {
+		return Log.isEnabled(level);
+	}
+	
+	default void log(String format) {
+		Log.log(Level.INFO, this, false, format);
+	}
+	
+	default void log(String format, Object a) {
+		Log.log(Level.INFO, this, false, format, a);
+	}
+	
+	default void log(String format, Object a, Object b) {
+		Log.log(Level.INFO, this, false, format, a, b);
+	}
+	
+	default void log(String format, Object a, Object b, Object c) {
+		Log.log(Level.INFO, this, false, format, a, b, c);
+	}
+	
 	default void log(String format, Object...args) {
-		if (Constants.VERBOSE) 
-			System.out.printf(this+"\t| "+format, args);
+		Log.log(Level.INFO, this, false, format, args);
+	}
+	
+	default void logln(String format) {
+		Log.log(Level.INFO, this, true, format);
+	}
+	
+	default void logln(String format, Object a) {
+		Log.log(Level.INFO, this, true, format, a);
+	}
+	
+	default void logln(String format, Object a, Object b) {
+		Log.log(Level.INFO, this, true, format, a, b);
+	}
+	
+	default void logln(String format, Object a, Object b, Object c) {
+		Log.log(Level.INFO, this, true, format, a, b, c);
 	}
 	
 	default void logln(String format, Object...args) {
-		log(format+"%n", args);
+		Log.log(Level.INFO, this, true, format, args);
+	}
+	
+	default void logln(Level level, String format) {
+		Log.log(level, this, true, format);
+	}
+	
+	default void logln(Level level, String format, Object a) {
+		Log.log(level, this, true, format, a);
+	}
+	
+	default void logln(Level level, String format, Object a, Object b) {
+		Log.log(level, this, true, format, a, b);
+	}
+	
+	default void logln(Level level, String format, Object a, Object b, Object c) {
+		Log.log(level, this, true, format, a, b, c);
+	}
+	
+	default void logln(Level level, String format, Object...args) {
+		Log.log(level, this, true, format, args);
 	}
-}
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package crawler.model;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -8,50 +9,127 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.management.JMException;
+
 import crawler.model.Context.Strategy;
+import crawler.model.Log.Level;
 
 public abstract class MultiCrawler<Uri> implements UncaughtExceptionHandler, Callable<Void>, Loggeable, Closeable {
+	/* PLATFORM runs each worker on a pooled OS thread, while VIRTUAL runs
+	 * them as virtual threads (needs a Java 21+ runtime) so that I/O bound 
+	 * crawls can afford thousands of workers. Either way, there is exactly 
+	 * one thread per worker, and a worker expands one element at a time, 
+	 * so maxThreads is what caps concurrent expansions in both modes. 
+	 * Virtual threads make raising maxThreads cheap, they don't spawn 
+	 * a thread per expansion.
+	 */
+	public static enum Threads { PLATFORM, VIRTUAL }
+	
 	public static final int DEFAULT_MAX_THREADS = 5;
-	public static final long DEFAULT_WORK_CHECK_DELAY = 5000;
+	public static final long DEFAULT_WORK_CHECK_DELAY = 5000;	// max park time before re-checking
 	
 	protected final int maxDepth;
 	protected final Context<Uri> context;
 	
 	private final int maxThreads;
-	private final ExecutorService executor;
-	private CountDownLatch startLatch, endLatch;
+	private Threads threads;
+	private int maxConcurrency, batchSize;
+	private ExecutorService executor;
+	private CountDownLatch endLatch;
 	private AtomicInteger terminated;
-	private boolean first;
+	private CrawlMetrics metrics;
+	private volatile Thread coordinator;	// runs call(), e.g. postCrawl
 	
 	public MultiCrawler(Context<Uri> context, int maxDepth, int maxThreads) {
 		this.maxDepth = maxDepth;
 		this.context = context;
 		this.maxThreads = maxThreads;
-		executor = Executors.newFixedThreadPool(maxThreads+1);	// +1 to account for current crawler
-		first = true;
+		threads = Threads.PLATFORM;
+		metrics = new CrawlMetrics(context);
 	}
 	
 	protected abstract Crawler<Uri> create(Context<Uri> context, int maxDepth);
 	
+	/* Execution settings, need to be set before crawling */
+	
+	public MultiCrawler<Uri> setThreads(Threads threads) {
+		this.threads = threads;
+		return this;
+	}
+	
+	public Threads getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * Caps how many frontier expansions can run at the same time, on top 
+	 * of maxThreads which always caps them (one expansion per worker). 
+	 * It's only useful below maxThreads, e.g. thousands of virtual thread 
+	 * workers sharing a few browsers. A value <= 0 means no extra limit.
+	 */
+	public MultiCrawler<Uri> setMaxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = maxConcurrency;
+		return this;
+	}
+	
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+	
+	/* See Crawler::setBatchSize, a value <= 0 keeps the workers' default */
+	public MultiCrawler<Uri> setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/* Shared by all workers, see CrawlMetrics::register to expose them over JMX */
+	public MultiCrawler<Uri> setMetrics(CrawlMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+	
+	public CrawlMetrics getMetrics() {
+		return metrics;
+	}
+	
+	private ExecutorService createExecutor() {
+		if (threads == Threads.PLATFORM)
+			return Executors.newFixedThreadPool(maxThreads+1);	// +1 to account for current crawler
+		// Looked up reflectively since we still compile against Java 14
+		try {
+			return (ExecutorService) Executors.class
+				.getMethod("newVirtualThreadPerTaskExecutor")
+				.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads require a Java 21+ runtime", e);
+		}
+	}
+	
 	/* Threading methods */
 	
 	@Override
 	public void uncaughtException(Thread t, Throwable e) {
-		logln("Thread %s triggered exception : %s", t, e);
+		logln(Level.ERROR, "Thread %s triggered exception : %s", t, e);
 	}
 	
 	public MultiCrawler<Uri> crawl() throws InterruptedException, ExecutionException {
+		if (executor == null)
+			executor = createExecutor();
 		executor.submit(this).get();
 		return this;
 	}
 	
 	protected void preCrawl() throws Exception {
 		terminated = new AtomicInteger();
-		startLatch = new CountDownLatch(maxThreads);
 		endLatch = new CountDownLatch(maxThreads);
 		logln("Starting mutli-threaded crawl with %s of %d", 
 				context.getStrategy() == Strategy.DEPTH_FIRST ? "max depth" : "breadth", 
@@ -64,51 +142,59 @@ public abstract class MultiCrawler<Uri> implements UncaughtExceptionHandler, Cal
 	
 	@Override
 	public Void call() throws Exception {
-		List<Callable<Void>> callables = spawnThreads();
-		preCrawl();
-		executor.invokeAll(callables);
-		postCrawl();
-		endLatch.await();
-		return null;
+		coordinator = Thread.currentThread();
+		try {
+			List<Callable<Void>> callables = spawnThreads();
+			preCrawl();
+			executor.invokeAll(callables);
+			postCrawl();
+			endLatch.await();
+			return null;
+		} finally {
+			coordinator = null;
+		}
 	}
 	
 	private List<Callable<Void>> spawnThreads() throws InterruptedException {
+		Semaphore limiter = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
 		return Stream.generate(() -> create(context, maxDepth))
 			.limit(maxThreads)
+			.map(crawler -> crawler.limit(limiter).setMetrics(metrics))
+			.map(crawler -> batchSize > 0 ? crawler.setBatchSize(batchSize) : crawler)
+			.map(this::prepare)
 			.map(this::convertToWorker)
 			.collect(Collectors.toList());
 	}
 	
+	/* Hook to configure workers before they start crawling */
+	protected Crawler<Uri> prepare(Crawler<Uri> worker) {
+		return worker;
+	}
+	
 	private final Callable<Void> convertToWorker(Crawler<Uri> crawler) {
-		/* Forces one crawler/worker to gather enough tasks for 
-		 * everyone before releasing all parked/awaiting workers.
-		 */
-		if (first) {
-			crawler.addPreVisit(() -> startLatch.countDown());
-			first = false;
-		} else
-			crawler.addPreExecute(() -> startLatch.await());
 		return new Callable<>() {
 			@Override
 			public Void call() throws Exception {
+				try { return crawl(); }
+				finally { context.storage().leave(); }	// frees per-thread state, e.g. work-stealing deques
+			}
+			
+			private Void crawl() throws Exception {
 				crawler.preCrawl();
-				// Keep crawling until no more work
-				out: while (true) {
+				/* Keep crawling until the frontier is empty and no other 
+				 * worker is still expanding a node (which could push more 
+				 * work). Idle workers stay parked in the meantime.
+				 */
+				do {
 					// Call crawl method in worker thread's context
 					try { crawler.executeStrategy(); }
 					catch (Exception e) {
-						crawler.logln("Killed thread that triggered error %s", this, e.getMessage());
-						e.printStackTrace();
+						crawler.logln(Level.ERROR, "Worker failed, killed its thread: %s", e);
 						endLatch.countDown();	// trip latch on error as well
 						return null;
 					}
-					// Retry checking for new tasks (using non-blocking sleep)
-					crawler.logln("Checking for extra tasks before stopping...", crawler);
-					long start = System.currentTimeMillis();
-					while (context.storage.isEmpty()) 
-						if (System.currentTimeMillis() - start >=  DEFAULT_WORK_CHECK_DELAY)
-							break out;
-				}
+					crawler.logln(Level.DEBUG, "Waiting for extra tasks before stopping...");
+				} while (context.awaitWork(DEFAULT_WORK_CHECK_DELAY));
 				// Worker thread has no more work and can terminate 
 				endLatch.countDown();
 				crawler.logln(
@@ -122,17 +208,32 @@ public abstract class MultiCrawler<Uri> implements UncaughtExceptionHandler, Cal
 		};
 	}
 	
+	/* Interrupts workers still crawling, also closes the journal of the context and unregisters metrics, if any */
 	@Override
 	public void close() {
-		executor.shutdown();
+		if (executor != null) {
+			if (Thread.currentThread() == coordinator)
+				executor.shutdown();	// closed by postCrawl, workers are done and we'd interrupt ourselves
+			else
+				executor.shutdownNow();
+		}
+		try { metrics.unregister(); }
+		catch (JMException e) { logln(Level.WARN, "Failed to unregister metrics: %s", e.getMessage()); }
+		Journal<Uri> journal = context.getJournal();
+		if (journal != null) {
+			try { journal.close(); }
+			catch (IOException e) { logln(Level.WARN, "Failed to close journal: %s", e.getMessage()); }
+		}
 	}
 	
 	public static abstract class Builder<Uri, R> extends Crawler.Builder<Uri, R> {
-		private int maxThreads;
+		private int maxThreads, maxConcurrency;
+		private Threads threads;
 		
 		public Builder(Strategy strategy) {
 			super(strategy);
 			maxThreads = DEFAULT_MAX_THREADS;
+			threads = Threads.PLATFORM;
 		}
 		
 		public Builder() {
@@ -147,5 +248,30 @@ public abstract class MultiCrawler<Uri> implements UncaughtExceptionHandler, Cal
 		public int getMaxThreads() {
 			return maxThreads;
 		}
+		
+		public Builder<Uri, R> setThreads(Threads threads) {
+			this.threads = threads;
+			return this;
+		}
+		
+		public Threads getThreads() {
+			return threads;
+		}
+		
+		public Builder<Uri, R> setMaxConcurrency(int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+			return this;
+		}
+		
+		public int getMaxConcurrency() {
+			return maxConcurrency;
+		}
+		
+		/* Applies the builder-level settings that aren't constructor arguments */
+		protected <C extends MultiCrawler<Uri>> C configure(C crawler) {
+			crawler.setThreads(threads)
+				.setMaxConcurrency(maxConcurrency);
+			return crawler;
+		}
 	}
 }
\ No newline at end of file
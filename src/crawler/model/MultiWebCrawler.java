@@ -1,16 +1,74 @@
 package crawler.model;
 
 import browser.common.Browser;
+import browser.common.BrowserPool;
 import crawler.model.Context.Strategy;
 
 public abstract class MultiWebCrawler extends MultiCrawler<String> {
+	private BrowserPool pool;
+	private URLCanonicalizer canonicalizer;
+	private FetchPolicy policy;
+	private HttpFetcher httpFetcher;
 
 	public MultiWebCrawler(Context<String> context, int maxDepth, int maxThreads) {
 		super(context, maxDepth, maxThreads);
+		canonicalizer = URLCanonicalizer.hosts();	// shared so that hosts are memoised once
+		policy = FetchPolicy.browser();
 	}
 
 	protected abstract Browser createBrowser();
 	
+	/**
+	 * Workers lease browsers from the pool instead of each creating
+	 * its own, needs to be set before crawling.
+	 */
+	public MultiWebCrawler setPool(BrowserPool pool) {
+		this.pool = pool;
+		return this;
+	}
+	
+	public BrowserPool getPool() {
+		return pool;
+	}
+	
+	public MultiWebCrawler setCanonicalizer(URLCanonicalizer canonicalizer) {
+		this.canonicalizer = canonicalizer;
+		return this;
+	}
+	
+	public URLCanonicalizer getCanonicalizer() {
+		return canonicalizer;
+	}
+	
+	public MultiWebCrawler setFetchPolicy(FetchPolicy policy) {
+		this.policy = policy;
+		return this;
+	}
+	
+	public FetchPolicy getFetchPolicy() {
+		return policy;
+	}
+	
+	/* Shared by all workers, created once the first page needs it */
+	public MultiWebCrawler setHttpFetcher(HttpFetcher httpFetcher) {
+		this.httpFetcher = httpFetcher;
+		return this;
+	}
+	
+	public HttpFetcher getHttpFetcher() {
+		return httpFetcher;
+	}
+	
+	@Override
+	protected Crawler<String> prepare(Crawler<String> worker) {
+		if (worker instanceof WebCrawler)
+			((WebCrawler) worker).setPool(pool)
+				.setCanonicalizer(canonicalizer)
+				.setFetchPolicy(policy)
+				.setHttpFetcher(httpFetcher);
+		return worker;
+	}
+	
 	/**
 	 * Wire every child's WebCrawler browser to the one 
 	 * created by the MultiWebCrawler.
@@ -22,20 +80,99 @@ public abstract class MultiWebCrawler extends MultiCrawler<String> {
 			protected Browser createBrowser() {
 				return MultiWebCrawler.this.createBrowser();
 			}
+			
+			@Override
+			protected HttpFetcher createHttpFetcher() {
+				return sharedHttpFetcher();
+			}
 		};
 	}
 	
+	private synchronized HttpFetcher sharedHttpFetcher() {
+		if (httpFetcher == null)
+			httpFetcher = new HttpFetcher();
+		return httpFetcher;
+	}
+	
 	/**
 	 * We only apply a restriction to all crawler builders that depend on this class.
 	 * Restriction: Built crawler needs to be of type MultiWebCrawler
 	 */
 	public static abstract class Builder<R extends MultiWebCrawler> extends MultiCrawler.Builder<String, R> {
+		private BrowserPool pool;
+		private URLCanonicalizer canonicalizer;
+		private FetchPolicy policy;
+		private HttpFetcher httpFetcher;
+		
 		public Builder(Strategy strategy) {
 			super(strategy);
+			canonicalizer = URLCanonicalizer.hosts();
+			policy = FetchPolicy.browser();
 		}
 		
 		public Builder() {
 			this(Strategy.BREADTH_FIRST);
 		}
+		
+		public Builder<R> setPool(BrowserPool pool) {
+			this.pool = pool;
+			return this;
+		}
+		
+		public BrowserPool getPool() {
+			return pool;
+		}
+		
+		public Builder<R> setCanonicalizer(URLCanonicalizer canonicalizer) {
+			this.canonicalizer = canonicalizer;
+			return this;
+		}
+		
+		public URLCanonicalizer getCanonicalizer() {
+			return canonicalizer;
+		}
+		
+		public Builder<R> setFetchPolicy(FetchPolicy policy) {
+			this.policy = policy;
+			return this;
+		}
+		
+		public FetchPolicy getFetchPolicy() {
+			return policy;
+		}
+		
+		public Builder<R> setHttpFetcher(HttpFetcher httpFetcher) {
+			this.httpFetcher = httpFetcher;
+			return this;
+		}
+		
+		/**
+		 * Replaces the context by one that crawls hosts politely (see 
+		 * Context::polite), so that workers spread across hosts. Needs 
+		 * to be called before pushing URIs to the context, and before 
+		 * setting a journal.
+		 */
+		public Builder<R> setPoliteness(int maxInFlight, long minDelay) {
+			Context<String> context = getContext();
+			if (context.pending() > 0)
+				throw new IllegalStateException("Politeness needs to be set before pushing URIs");
+			setContext(Context.polite(context.getStrategy(), maxInFlight, minDelay));
+			return this;
+		}
+		
+		public HttpFetcher getHttpFetcher() {
+			return httpFetcher;
+		}
+		
+		@Override
+		protected <C extends MultiCrawler<String>> C configure(C crawler) {
+			super.configure(crawler);
+			if (crawler instanceof MultiWebCrawler)
+				((MultiWebCrawler) crawler).setPool(pool)
+					.setCanonicalizer(canonicalizer)
+					.setFetchPolicy(policy)
+					.setHttpFetcher(httpFetcher);
+			return crawler;
+		}
 	}
 }
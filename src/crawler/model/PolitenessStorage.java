@@ -0,0 +1,243 @@
+package crawler.model;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Linear storage that keeps a queue (or stack) per host, so that workers
+ * are spread across hosts instead of all hammering the same one. A host
+ * only hands out elements while fewer than {@code maxInFlight} of its
+ * elements are being crawled, and at least {@code minDelay} after the
+ * previous one was handed out. Ready hosts take turns (round-robin).
+ * <p>
+ * Elements stay in flight until {@link #done(Object)} is called, which
+ * {@link Context} does once they've been expanded. In the meantime,
+ * {@link #pop()} can return null even though the storage isn't empty,
+ * {@link #readyIn()} tells when it's worth trying again.
+ * <p>
+ * Hosts left with nothing queued nor in flight are only forgotten once
+ * their delay is over, so that pushing to them again right away still
+ * waits for it.
+ *
+ * @param <V> - grouped by the host given by the key function
+ */
+public class PolitenessStorage<V> implements LinearStorage<V> {
+	public static final int DEFAULT_MAX_IN_FLIGHT = 1;
+	public static final long DEFAULT_MIN_DELAY = 1000;	// ms
+
+	private final Function<? super V, ?> key;
+	private final int maxInFlight;
+	private final long minDelay;	// ns
+	private final boolean lifo;
+	private final Map<Object, Host<V>> hosts;
+	private final Deque<Host<V>> ready;
+	private final PriorityQueue<Host<V>> delayed;	// by next allowed start
+	private final PriorityQueue<Idle<V>> idle;	// hosts to forget, by end of their delay
+	private int size;
+
+	private PolitenessStorage(Function<? super V, ?> key, int maxInFlight, long minDelay, boolean lifo) {
+		if (maxInFlight <= 0)
+			throw new IllegalArgumentException("Max in-flight elements per host can only be strict positive integers");
+		this.key = key;
+		this.maxInFlight = maxInFlight;
+		this.minDelay = TimeUnit.MILLISECONDS.toNanos(minDelay);
+		this.lifo = lifo;
+		hosts = new HashMap<>();
+		ready = new ArrayDeque<>();
+		delayed = new PriorityQueue<>(Comparator.comparingLong(host -> host.nextStart));
+		idle = new PriorityQueue<>(Comparator.comparingLong(entry -> entry.until));
+	}
+
+	public static <V> PolitenessStorage<V> queue(Function<? super V, ?> key, int maxInFlight, long minDelay) {
+		return new PolitenessStorage<>(key, maxInFlight, minDelay, false);
+	}
+
+	public static <V> PolitenessStorage<V> stack(Function<? super V, ?> key, int maxInFlight, long minDelay) {
+		return new PolitenessStorage<>(key, maxInFlight, minDelay, true);
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	/* Number of hosts with elements either waiting or in flight, or still within their delay */
+	public synchronized int hosts() {
+		evict(System.nanoTime());
+		return hosts.size();
+	}
+
+	@Override
+	public synchronized PolitenessStorage<V> push(V e) {
+		long now = System.nanoTime();
+		evict(now);
+		add(e, now);
+		return this;
+	}
+
+	@Override
+	public synchronized PolitenessStorage<V> pushAll(Collection<? extends V> elements) {
+		long now = System.nanoTime();
+		evict(now);
+		for (V e : elements)
+			add(e, now);
+		return this;
+	}
+
+	/**
+	 * @return the next element of the next ready host, or null if no host
+	 * is ready (e.g. they're all waiting for their delay or at capacity)
+	 */
+	@Override
+	public synchronized V pop() {
+		long now = System.nanoTime();
+		promote(now);
+		Host<V> host = ready.pollFirst();
+		if (host == null)
+			return null;
+		host.scheduled = false;
+		V e = lifo ? host.elements.pollLast() : host.elements.pollFirst();
+		host.inFlight++;
+		host.nextStart = now + minDelay;
+		size--;
+		schedule(host, now);	// back of the line
+		return e;
+	}
+
+	/**
+	 * Hands out a single element at most: a worker holding a batch would
+	 * keep those hosts' slots busy while crawling the rest of it.
+	 */
+	@Override
+	public synchronized int drainTo(Collection<? super V> buffer, int max) {
+		if (max <= 0)
+			return 0;
+		V e = pop();
+		if (e == null)
+			return 0;
+		buffer.add(e);
+		return 1;
+	}
+
+	@Override
+	public synchronized boolean done(V e) {
+		long now = System.nanoTime();
+		evict(now);
+		Host<V> host = hosts.get(keyOf(e));
+		if (host == null || host.inFlight == 0)
+			return false;
+		host.inFlight--;
+		if (host.isIdle()) {
+			if (host.nextStart - now <= 0)
+				hosts.remove(host.key);
+			else
+				idle.add(new Idle<>(host, host.nextStart));	// keeps its delay until then
+			return false;
+		}
+		return schedule(host, now);
+	}
+
+	@Override
+	public synchronized long readyIn() {
+		long now = System.nanoTime();
+		promote(now);
+		if (!ready.isEmpty())
+			return 0;
+		Host<V> next = delayed.peek();
+		if (next == null)
+			return Long.MAX_VALUE;	// every host is at capacity
+		return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next.nextStart - now));
+	}
+
+	/* Internal helpers */
+
+	private void add(V e, long now) {
+		Host<V> host = hosts.computeIfAbsent(keyOf(e), k -> new Host<>(k, now));
+		host.elements.addLast(e);
+		size++;
+		schedule(host, now);
+	}
+
+	private Object keyOf(V e) {
+		Object k = key.apply(e);
+		return k == null ? "" : k;
+	}
+
+	/* Lines the host up if it has elements and room for more in flight */
+	private boolean schedule(Host<V> host, long now) {
+		if (host.scheduled || host.elements.isEmpty() || host.inFlight >= maxInFlight)
+			return false;
+		host.scheduled = true;
+		if (host.nextStart - now <= 0)
+			ready.addLast(host);
+		else
+			delayed.add(host);
+		return true;
+	}
+
+	/* Forgets idle hosts whose delay is over, unless they were used again since */
+	private void evict(long now) {
+		for (Idle<V> entry; (entry = idle.peek()) != null && entry.until - now <= 0;) {
+			idle.poll();
+			Host<V> host = entry.host;
+			if (host.isIdle() && host.nextStart == entry.until && hosts.get(host.key) == host)
+				hosts.remove(host.key);
+		}
+	}
+
+	/* Moves hosts whose delay is over to the ready queue */
+	private void promote(long now) {
+		for (Host<V> host; (host = delayed.peek()) != null && host.nextStart - now <= 0;)
+			ready.addLast(delayed.poll());
+	}
+
+	/* Accessors */
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	public long getMinDelay() {
+		return TimeUnit.NANOSECONDS.toMillis(minDelay);
+	}
+
+	private static class Host<V> {
+		final Object key;
+		final Deque<V> elements = new ArrayDeque<>();
+		int inFlight;
+		long nextStart;		// ns
+		boolean scheduled;	// in either ready or delayed
+
+		Host(Object key, long nextStart) {
+			this.key = key;
+			this.nextStart = nextStart;
+		}
+
+		boolean isIdle() {
+			return elements.isEmpty() && inFlight == 0;
+		}
+	}
+
+	/* Snapshot of when an idle host can be forgotten, since its nextStart changes if used again */
+	private static class Idle<V> {
+		final Host<V> host;
+		final long until;	// ns
+
+		Idle(Host<V> host, long until) {
+			this.host = host;
+			this.until = until;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package crawler.model;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/* Lock-free priority storage used for Best-first search. Elements
+ * are scored once when pushed and popped highest score first, ties
+ * being popped in insertion order (e.g. FIFO).
+ */
+public class PriorityStorage<V> implements LinearStorage<V> {
+	private final ConcurrentSkipListSet<Entry<V>> entries;
+	private final AtomicLong sequence;
+	private final LongAdder size;
+	private volatile ToDoubleFunction<V> scorer;
+
+	public PriorityStorage(ToDoubleFunction<V> scorer) {
+		entries = new ConcurrentSkipListSet<>(Entry.COMPARATOR);
+		sequence = new AtomicLong();
+		size = new LongAdder();
+		this.scorer = scorer;
+	}
+
+	/**
+	 * Only affects elements pushed from now on, elements already
+	 * in storage keep the score they were given.
+	 */
+	public PriorityStorage<V> setScorer(ToDoubleFunction<V> scorer) {
+		this.scorer = scorer;
+		return this;
+	}
+
+	public ToDoubleFunction<V> getScorer() {
+		return scorer;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return (int) Math.max(0, size.sum());
+	}
+
+	@Override
+	public PriorityStorage<V> push(V e) {
+		entries.add(new Entry<>(scorer.applyAsDouble(e), sequence.getAndIncrement(), e));
+		size.increment();
+		return this;
+	}
+
+	@Override
+	public V pop() {
+		Entry<V> entry = entries.pollFirst();
+		if (entry == null)
+			return null;
+		size.decrement();
+		return entry.value;
+	}
+
+	@Override
+	public PriorityStorage<V> pushAll(Collection<? extends V> elements) {
+		ToDoubleFunction<V> scorer = this.scorer;
+		for (V e : elements)
+			entries.add(new Entry<>(scorer.applyAsDouble(e), sequence.getAndIncrement(), e));
+		size.add(elements.size());
+		return this;
+	}
+
+	@Override
+	public int drainTo(Collection<? super V> buffer, int max) {
+		int n = 0;
+		for (Entry<V> entry; n < max && (entry = entries.pollFirst()) != null; n++)
+			buffer.add(entry.value);
+		if (n > 0)
+			size.add(-n);
+		return n;
+	}
+
+	private static class Entry<V> {
+		static final Comparator<Entry<?>> COMPARATOR = Comparator
+			.<Entry<?>>comparingDouble(entry -> -entry.score)
+			.thenComparingLong(entry -> entry.sequence);
+
+		final double score;
+		final long sequence;
+		final V value;
+
+		Entry(double score, long sequence, V value) {
+			this.score = score;
+			this.sequence = sequence;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package crawler.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+
+/**
+ * Linear storage that only keeps a bounded number of elements in memory
+ * and spills the rest to segment files of {@code segmentSize} elements,
+ * so that frontiers larger than the heap can still be crawled.
+ * <p>
+ * As a queue (FIFO), elements are popped from an in-memory head and
+ * pushed to an in-memory tail, the middle being spilled in push order.
+ * As a stack (LIFO), the top stays in memory and its bottom half gets
+ * spilled whenever it grows too large. Either way, a segment is written
+ * and read back in one sequential batch, and deleted once read.
+ *
+ * @param <V> - written and read back through the given codec
+ */
+public class SpillingStorage<V> implements LinearStorage<V>, Closeable {
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 14;
+	private static final String PREFIX = "segment-", SUFFIX = ".bin";
+
+	private final Codec<V> codec;
+	private final Path directory;
+	private final int segmentSize;
+	private final boolean lifo;
+	private final Deque<V> head, tail;		// tail is only used as a queue
+	private final Deque<Path> segments;
+	private long sequence;
+	private int size;
+
+	private SpillingStorage(Codec<V> codec, Path directory, int segmentSize, boolean lifo) throws IOException {
+		if (segmentSize <= 0)
+			throw new IllegalArgumentException("Segment size can only be strict positive integers");
+		this.codec = codec;
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+		this.lifo = lifo;
+		head = new ArrayDeque<>();
+		tail = new ArrayDeque<>();
+		segments = new ArrayDeque<>();
+	}
+
+	public static <V> SpillingStorage<V> queue(Codec<V> codec, Path directory, int segmentSize) throws IOException {
+		return new SpillingStorage<>(codec, directory, segmentSize, false);
+	}
+
+	public static <V> SpillingStorage<V> queue(Codec<V> codec, Path directory) throws IOException {
+		return queue(codec, directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public static <V> SpillingStorage<V> stack(Codec<V> codec, Path directory, int segmentSize) throws IOException {
+		return new SpillingStorage<>(codec, directory, segmentSize, true);
+	}
+
+	public static <V> SpillingStorage<V> stack(Codec<V> codec, Path directory) throws IOException {
+		return stack(codec, directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	/* Elements currently held in memory */
+	public synchronized int buffered() {
+		return head.size() + tail.size();
+	}
+
+	/* Number of segment files currently on disk */
+	public synchronized int spilled() {
+		return segments.size();
+	}
+
+	@Override
+	public synchronized SpillingStorage<V> push(V e) {
+		if (lifo) {
+			head.push(e);
+			if (head.size() >= 2 * segmentSize)
+				spill(head, true);
+		} else if (segments.isEmpty() && tail.isEmpty() && head.size() < segmentSize)
+			head.addLast(e);
+		else {
+			tail.addLast(e);
+			if (tail.size() >= segmentSize)
+				spill(tail, false);
+		}
+		size++;
+		return this;
+	}
+
+	@Override
+	public synchronized V pop() {
+		if (head.isEmpty()) {
+			if (!segments.isEmpty())
+				load(lifo ? segments.pollLast() : segments.pollFirst());
+			else {
+				head.addAll(tail);
+				tail.clear();
+			}
+		}
+		V e = head.pollFirst();
+		if (e != null)
+			size--;
+		return e;
+	}
+
+	@Override
+	public synchronized SpillingStorage<V> pushAll(Collection<? extends V> elements) {
+		for (V e : elements)
+			push(e);
+		return this;
+	}
+
+	@Override
+	public synchronized int drainTo(Collection<? super V> buffer, int max) {
+		int n = 0;
+		for (V e; n < max && (e = pop()) != null; n++)
+			buffer.add(e);
+		return n;
+	}
+
+	/* Segment files */
+
+	/**
+	 * Writes segmentSize elements to a new segment, taken from the bottom
+	 * of the stack (e.g. the end of the deque) or from the front of the
+	 * queue, so that segments are always ordered like their elements.
+	 */
+	private void spill(Deque<V> elements, boolean bottom) {
+		Path segment = directory.resolve(PREFIX + sequence++ + SUFFIX);
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			Deque<V> batch = new ArrayDeque<>(segmentSize);
+			for (int i=0; i<segmentSize; i++) {
+				if (bottom)
+					batch.addFirst(elements.pollLast());	// keeps top to bottom order
+				else
+					batch.addLast(elements.pollFirst());
+			}
+			out.writeInt(batch.size());
+			for (V e : batch)
+				codec.write(out, e);
+			out.flush();
+			Files.write(segment, bytes.toByteArray());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to spill frontier to "+segment, e);
+		}
+		segments.addLast(segment);
+	}
+
+	private void load(Path segment) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(segment)));
+			int count = in.readInt();
+			for (int i=0; i<count; i++)
+				head.addLast(codec.read(in));
+			Files.delete(segment);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to load frontier from "+segment, e);
+		}
+	}
+
+	/* Deletes remaining segments, the storage is empty afterwards */
+	@Override
+	public synchronized void close() throws IOException {
+		for (Path segment : segments)
+			Files.deleteIfExists(segment);
+		segments.clear();
+		head.clear();
+		tail.clear();
+		size = 0;
+	}
+}
@@ -0,0 +1,67 @@
+package crawler.model;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.Stack;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/* Monitor-based linear storage, every operation locks the
+ * whole collection. Fine for single-threaded crawlers, but
+ * all workers of a MultiCrawler contend on the same lock.
+ */
+public class SynchronisedStorage<V> implements LinearStorage<V> {
+	private Collection<V> collection;
+	private Consumer<V> pusher;
+	private Supplier<V> popper;
+
+	private SynchronisedStorage(Consumer<V> pusher, Supplier<V> popper, Collection<V> collection) {
+		this.pusher = pusher;
+		this.popper = popper;
+		this.collection = collection;
+	}
+
+	public SynchronisedStorage(Queue<V> queue) {
+		this(queue::offer, queue::poll, queue);
+	}
+
+	public SynchronisedStorage(Stack<V> stack) {
+		this(stack::push, () -> stack.isEmpty() ? null : stack.pop(), stack);
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return collection.isEmpty();
+	}
+
+	@Override
+	public synchronized int size() {
+		return collection.size();
+	}
+
+	@Override
+	public synchronized SynchronisedStorage<V> push(V e) {
+		pusher.accept(e);
+		return this;
+	}
+
+	@Override
+	public synchronized V pop() {
+		return popper.get();
+	}
+
+	@Override
+	public synchronized SynchronisedStorage<V> pushAll(Collection<? extends V> elements) {
+		for (V e : elements)
+			pusher.accept(e);
+		return this;
+	}
+
+	@Override
+	public synchronized int drainTo(Collection<? super V> buffer, int max) {
+		int n = 0;
+		for (V e; n < max && (e = popper.get()) != null; n++)
+			buffer.add(e);
+		return n;
+	}
+}
@@ -0,0 +1,183 @@
+package crawler.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the links found on a page into the canonical URLs that get
+ * pushed to the context, so that variations of the same URL are only
+ * crawled once: scheme and host are lower-cased, default ports and
+ * fragments are dropped, and paths (or queries) are only kept when
+ * asked to. By default, only the host of http(s) URLs is kept, as
+ * {@code http://host}.
+ * <p>
+ * URLs are parsed by hand rather than through {@link java.net.URL},
+ * and the canonical origin of every scheme + authority is memoised,
+ * so canonical URLs of the same host share the same string.
+ */
+public class URLCanonicalizer {
+	public static final int DEFAULT_CACHE_SIZE = 1 << 16;
+	private static final String INVALID = "";	// memoised for authorities without a host
+
+	private final boolean keepPaths, keepQueries;
+	private final int cacheSize;
+	private final Map<String, String> origins;
+
+	public URLCanonicalizer(boolean keepPaths, boolean keepQueries, int cacheSize) {
+		this.keepPaths = keepPaths;
+		this.keepQueries = keepPaths && keepQueries;
+		this.cacheSize = cacheSize;
+		origins = new ConcurrentHashMap<>();
+	}
+
+	public URLCanonicalizer(boolean keepPaths, boolean keepQueries) {
+		this(keepPaths, keepQueries, DEFAULT_CACHE_SIZE);
+	}
+
+	/* Only keeps hosts of http(s) URLs, e.g. http://host */
+	public static URLCanonicalizer hosts() {
+		return new URLCanonicalizer(false, false);
+	}
+
+	/* Keeps scheme, host, port and path, e.g. https://host:8080/path */
+	public static URLCanonicalizer paths() {
+		return new URLCanonicalizer(true, false);
+	}
+
+	public boolean keepsPaths() {
+		return keepPaths;
+	}
+
+	public boolean keepsQueries() {
+		return keepQueries;
+	}
+
+	/**
+	 * @return the canonical URL, or null if it isn't an absolute URL
+	 * with a host (e.g. mailto: or javascript: links), or if only hosts
+	 * are kept and it isn't an http(s) URL
+	 */
+	public String canonicalize(String url) {
+		if (url == null)
+			return null;
+		int schemeEnd = url.indexOf("://");
+		if (schemeEnd <= 0)
+			return null;
+		int authorityEnd = schemeEnd + 3;
+		while (authorityEnd < url.length() && "/?#".indexOf(url.charAt(authorityEnd)) < 0)
+			authorityEnd++;
+		String origin = origin(url, schemeEnd, authorityEnd);
+		if (origin.isEmpty())
+			return null;
+		if (!keepPaths)
+			return origin;
+		int end = url.indexOf('#', authorityEnd);
+		if (end < 0)
+			end = url.length();
+		if (!keepQueries) {
+			int query = url.indexOf('?', authorityEnd);
+			if (query >= 0 && query < end)
+				end = query;
+		}
+		if (authorityEnd == end || url.charAt(authorityEnd) != '/')
+			return origin + "/" + url.substring(authorityEnd, end);
+		return origin + url.substring(authorityEnd, end);
+	}
+
+	/**
+	 * Canonicalises all the URLs, dropping invalid ones and duplicates
+	 * while keeping their order.
+	 */
+	public List<String> canonicalize(Collection<String> urls) {
+		List<String> canonical = new ArrayList<>(urls.size());
+		Set<String> seen = new HashSet<>(urls.size() * 2);
+		for (String url : urls) {
+			String converted = canonicalize(url);
+			if (converted != null && seen.add(converted))
+				canonical.add(converted);
+		}
+		return canonical;
+	}
+
+	/**
+	 * @return the host of an absolute URL as canonical URLs have it, 
+	 * without user info or port, or null if there's none
+	 */
+	public static String hostOf(String url) {
+		int start = url.indexOf("://");
+		if (start < 0)
+			return null;
+		start += 3;
+		int end = start;
+		while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0)
+			end++;
+		start = Math.max(start, url.lastIndexOf('@', end - 1) + 1);	// drop user info
+		int port = url.lastIndexOf(':', end - 1);
+		if (port >= start && url.lastIndexOf(']', end - 1) < port)
+			end = port;
+		String host = host(url, start, end);
+		return host.isEmpty() ? null : host;
+	}
+
+	/* Lower-cased, and without the trailing dot of fully qualified names since they're the same host */
+	private static String host(String url, int start, int end) {
+		if (end > start && url.charAt(end - 1) == '.')
+			end--;
+		return url.substring(start, end).toLowerCase(Locale.ROOT);
+	}
+
+	private String origin(String url, int schemeEnd, int authorityEnd) {
+		String key = url.substring(0, authorityEnd), origin = origins.get(key);
+		if (origin != null)
+			return origin;
+		if (origins.size() >= cacheSize)
+			origins.clear();	// cheaper than tracking recency, hosts get memoised again quickly
+		origin = parseOrigin(key, schemeEnd);
+		origins.put(key, origin);
+		return origin;
+	}
+
+	private String parseOrigin(String prefix, int schemeEnd) {
+		String scheme = prefix.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+		for (int i=0; i<scheme.length(); i++) {
+			char c = scheme.charAt(i);
+			if (!(c >= 'a' && c <= 'z' || i > 0 && (c >= '0' && c <= '9' || c == '+' || c == '-' || c == '.')))
+				return INVALID;
+		}
+		if (!keepPaths && !scheme.equals("http") && !scheme.equals("https"))
+			return INVALID;
+		int hostStart = prefix.lastIndexOf('@') + 1;	// drop user info
+		if (hostStart <= schemeEnd)
+			hostStart = schemeEnd + 3;
+		int portStart = prefix.lastIndexOf(':');
+		if (portStart < hostStart || prefix.lastIndexOf(']') > portStart)	// no port, or IPv6 colon
+			portStart = prefix.length();
+		String host = host(prefix, hostStart, portStart);
+		if (host.isEmpty())
+			return INVALID;
+		if (!keepPaths)
+			return "http://" + host;
+		String port = portStart + 1 < prefix.length() ? prefix.substring(portStart + 1) : "";
+		for (int i=0; i<port.length(); i++)
+			if (port.charAt(i) < '0' || port.charAt(i) > '9')
+				return INVALID;
+		if (port.isEmpty() || port.equals(defaultPort(scheme)))
+			return scheme + "://" + host;
+		return scheme + "://" + host + ":" + port;
+	}
+
+	private static String defaultPort(String scheme) {
+		switch (scheme) {
+			case "http": return "80";
+			case "https": return "443";
+			case "ftp": return "21";
+			default: return null;
+		}
+	}
+}
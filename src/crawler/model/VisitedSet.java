@@ -0,0 +1,80 @@
+package crawler.model;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/* Thread-safe set of the URIs that were already visited
+ * during a crawl, looked up on every push and pop.
+ */
+public interface VisitedSet<Uri> {
+
+	boolean contains(Uri uri);
+
+	/**
+	 * @return true if the URI wasn't already in the set
+	 */
+	boolean add(Uri uri);
+
+	int size();
+
+	/**
+	 * @return the estimated probability that contains() returns
+	 * true for a URI that was never added
+	 */
+	default double falsePositiveRate() {
+		return 0d;
+	}
+
+	/**
+	 * Read-only view for lookups, can only be iterated by
+	 * sets that keep the URIs themselves.
+	 */
+	default Set<Uri> asSet() {
+		return new AbstractSet<>() {
+			@Override
+			@SuppressWarnings("unchecked")	// lookups only hash the object
+			public boolean contains(Object o) {
+				return VisitedSet.this.contains((Uri) o);
+			}
+
+			@Override
+			public int size() {
+				return VisitedSet.this.size();
+			}
+
+			@Override
+			public Iterator<Uri> iterator() {
+				throw new UnsupportedOperationException(VisitedSet.this.getClass().getSimpleName() + " doesn't keep the URIs it visited");
+			}
+		};
+	}
+
+	/* Hashing helpers */
+
+	/**
+	 * 64-bit FNV-1a over the characters followed by the murmur3
+	 * finaliser, avoids allocating anything for CharSequences.
+	 */
+	static long hash(CharSequence sequence) {
+		long h = 0xcbf29ce484222325L;
+		for (int i=0; i<sequence.length(); i++) {
+			h ^= sequence.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	static long hash(Object uri) {
+		return hash(uri instanceof CharSequence ? (CharSequence) uri : uri.toString());
+	}
+
+	static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
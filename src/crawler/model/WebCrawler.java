@@ -1,29 +1,85 @@
 package crawler.model;
 
 import java.io.Closeable;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import org.openqa.selenium.By;
 
 import browser.common.Browser;
+import browser.common.BrowserPool;
 import crawler.model.Context.Strategy;
+import crawler.model.FetchPolicy.Backend;
+import crawler.model.Log.Level;
 
 public abstract class WebCrawler extends Crawler<String> implements Closeable {
-	private Browser browser;
+	private BrowserFetcher browserFetcher;
+	private HttpFetcher httpFetcher;
+	private FetchPolicy policy;
+	private BrowserPool pool;
+	private URLCanonicalizer canonicalizer;
 	
 	public WebCrawler(Context<String> context, int maxDepth) {
 		super(context, maxDepth);
+		policy = FetchPolicy.browser();
+		canonicalizer = URLCanonicalizer.hosts();
 	}
 	
 	protected abstract Browser createBrowser();
 	
+	/* Only called once a page needs plain HTTP and no fetcher was set */
+	protected HttpFetcher createHttpFetcher() {
+		return new HttpFetcher();
+	}
+	
+	/**
+	 * Leases a browser from the pool for every page instead of creating
+	 * one for the whole crawl, needs to be set before crawling.
+	 */
+	public WebCrawler setPool(BrowserPool pool) {
+		this.pool = pool;
+		return this;
+	}
+	
+	public BrowserPool getPool() {
+		return pool;
+	}
+	
+	/* Converts links found on a page into the URLs to push, defaults to hosts only */
+	public WebCrawler setCanonicalizer(URLCanonicalizer canonicalizer) {
+		this.canonicalizer = canonicalizer;
+		return this;
+	}
+	
+	public URLCanonicalizer getCanonicalizer() {
+		return canonicalizer;
+	}
+	
+	/**
+	 * Chooses which pages are fetched through a browser and which through
+	 * plain HTTP requests, defaults to browsers only. Fetchers are only
+	 * created once a page needs them, so rules can be added mid-crawl.
+	 */
+	public WebCrawler setFetchPolicy(FetchPolicy policy) {
+		this.policy = policy;
+		return this;
+	}
+	
+	public FetchPolicy getFetchPolicy() {
+		return policy;
+	}
+	
+	/* Fetcher used for plain HTTP requests, so that it can be shared */
+	public WebCrawler setHttpFetcher(HttpFetcher httpFetcher) {
+		this.httpFetcher = httpFetcher;
+		return this;
+	}
+	
+	public HttpFetcher getHttpFetcher() {
+		return httpFetcher;
+	}
+	
 	@Override
 	protected void preCrawl() throws Exception {
-		if (browser == null)
-			browser = createBrowser();
+		/* Fetchers are created on the first page that needs them (see fetcher) */
 	}
 	
 	@Override
@@ -33,44 +89,96 @@ public abstract class WebCrawler extends Crawler<String> implements Closeable {
 	}
 	
 	@Override
-	public void close() {
-		if (browser != null) {
-			browser.close();
-			browser = null;
+	public synchronized void close() {
+		if (browserFetcher != null) {
+			browserFetcher.close();
+			browserFetcher = null;
 		}
 	}
 	
 	@Override
 	protected List<String> crawlFrontier(String uri) throws Exception {
-		try { 
-			return browser.visit(uri)
-				.findElements(By.tagName("a"))		// get all <a> tags
-				.stream()
-				.map(e -> {
-					try { return e.getAttribute("href"); }
-					catch (Exception ex) { return null; }
-				})	// get their url/links
-				.map(url -> { 						// convert to URL objects
-					try { return new URL(url);} 
-					catch (Exception ex) { return null; }
-				})
-				.filter(url -> url != null && !url.getHost().equals(""))	// remove nulls
-				.map(URL::getHost)					// convert to String only containing host part
-				.map(url -> String.format("http://%s", url))	// prepend http protocol
-				.distinct()
-				.collect(Collectors.toList());
-		} catch (Exception e) {
-			return new ArrayList<>();
+		List<String> links = fetcher(policy.choose(uri)).fetch(uri);
+		return canonicalizer.canonicalize(links);	// drops invalid and duplicate URLs
+	}
+	
+	private synchronized Fetcher fetcher(Backend backend) {
+		if (backend == Backend.HTTP) {
+			if (httpFetcher == null)
+				httpFetcher = createHttpFetcher();
+			return httpFetcher;
 		}
+		if (browserFetcher == null)
+			browserFetcher = pool == null ? new BrowserFetcher(this::createBrowser) : new BrowserFetcher(pool);
+		return browserFetcher;
+	}
+	
+	/* Pages that failed to load are counted (see CrawlMetrics::getFailures) and skipped */
+	@Override
+	protected List<String> frontierFailed(String uri, Exception e) {
+		logln(Level.DEBUG, "Failed to fetch %s: %s", uri, e);
+		return new ArrayList<>();
 	}
 	
 	public static abstract class Builder<R> extends Crawler.Builder<String, R> {
+		private BrowserPool pool;
+		private URLCanonicalizer canonicalizer;
+		private FetchPolicy policy;
+		private HttpFetcher httpFetcher;
+		
 		public Builder(Strategy strategy) {
 			super(strategy);
+			canonicalizer = URLCanonicalizer.hosts();
+			policy = FetchPolicy.browser();
 		}
 		
 		public Builder() {
 			this(Strategy.BREADTH_FIRST);
 		}
+		
+		public Builder<R> setPool(BrowserPool pool) {
+			this.pool = pool;
+			return this;
+		}
+		
+		public BrowserPool getPool() {
+			return pool;
+		}
+		
+		public Builder<R> setCanonicalizer(URLCanonicalizer canonicalizer) {
+			this.canonicalizer = canonicalizer;
+			return this;
+		}
+		
+		public URLCanonicalizer getCanonicalizer() {
+			return canonicalizer;
+		}
+		
+		public Builder<R> setFetchPolicy(FetchPolicy policy) {
+			this.policy = policy;
+			return this;
+		}
+		
+		public FetchPolicy getFetchPolicy() {
+			return policy;
+		}
+		
+		public Builder<R> setHttpFetcher(HttpFetcher httpFetcher) {
+			this.httpFetcher = httpFetcher;
+			return this;
+		}
+		
+		public HttpFetcher getHttpFetcher() {
+			return httpFetcher;
+		}
+		
+		/* Applies the builder-level settings that aren't constructor arguments */
+		protected <C extends WebCrawler> C configure(C crawler) {
+			crawler.setPool(pool)
+				.setCanonicalizer(canonicalizer)
+				.setFetchPolicy(policy)
+				.setHttpFetcher(httpFetcher);
+			return crawler;
+		}
 	}
 }
\ No newline at end of file
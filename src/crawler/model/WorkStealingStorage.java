@@ -0,0 +1,177 @@
+package crawler.model;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Work-stealing LIFO storage used for Depth-first search. Every
+ * thread pushes to and pops from the tail of its own deque, so
+ * workers only touch each other's deques once theirs is empty,
+ * in which case they steal the oldest element (e.g. the head)
+ * of another deque. Ordering is strictly LIFO per thread, which
+ * is the same as a Stack when only one thread is crawling.
+ * Deques live in slots that are given back when their thread
+ * leaves, so that slots don't grow with every thread that ever
+ * pushed. Emptiness is read from the element count rather than by
+ * scanning slots, and thieves only probe a few of them.
+ */
+public class WorkStealingStorage<V> implements LinearStorage<V> {
+	private static final int INITIAL_SLOTS = 16;
+	private static final int STEAL_PROBES = 64;
+
+	private volatile AtomicReferenceArray<Slot<V>> slots;	// null when free
+	private final Deque<Integer> free;	// freed indexes, guards slots updates
+	private volatile int used;	// slots ever handed out, written under free
+	private final ThreadLocal<Slot<V>> local;
+	private final LongAdder size;
+
+	/* A thread's deque, orphaned once its thread left with elements
+	 * still in it: thieves free the slot when they find it empty.
+	 */
+	private static class Slot<V> {
+		private final ConcurrentLinkedDeque<V> deque = new ConcurrentLinkedDeque<>();
+		private final int index;
+		private volatile boolean orphaned;
+
+		private Slot(int index) {
+			this.index = index;
+		}
+	}
+
+	public WorkStealingStorage() {
+		slots = new AtomicReferenceArray<>(INITIAL_SLOTS);
+		free = new ArrayDeque<>();
+		local = new ThreadLocal<>();
+		size = new LongAdder();
+	}
+
+	private ConcurrentLinkedDeque<V> own() {
+		Slot<V> slot = local.get();
+		if (slot == null)
+			local.set(slot = register());
+		return slot.deque;
+	}
+
+	private Slot<V> register() {
+		synchronized (free) {
+			int index = free.isEmpty() ? used++ : free.pop();
+			AtomicReferenceArray<Slot<V>> slots = this.slots;
+			if (index >= slots.length()) {
+				AtomicReferenceArray<Slot<V>> grown = new AtomicReferenceArray<>(slots.length() * 2);
+				for (int i=0; i<slots.length(); i++)
+					grown.set(i, slots.get(i));
+				this.slots = slots = grown;
+			}
+			Slot<V> slot = new Slot<>(index);
+			slots.set(index, slot);
+			return slot;
+		}
+	}
+
+	private void release(Slot<V> slot) {
+		synchronized (free) {
+			if (slots.get(slot.index) == slot) {
+				slots.set(slot.index, null);
+				free.push(slot.index);
+			}
+		}
+	}
+
+	/* Elements left behind stay stealable, the slot is only
+	 * given back once they've all been popped.
+	 */
+	@Override
+	public void leave() {
+		Slot<V> slot = local.get();
+		if (slot == null)
+			return;
+		local.remove();
+		slot.orphaned = true;
+		if (slot.deque.isEmpty())
+			release(slot);
+	}
+
+	/* Counted before pushing and after popping, so it's never empty while holding elements */
+	@Override
+	public boolean isEmpty() {
+		return size.sum() <= 0;
+	}
+
+	@Override
+	public int size() {
+		return (int) Math.max(0, size.sum());
+	}
+
+	@Override
+	public WorkStealingStorage<V> push(V e) {
+		size.increment();
+		own().offerLast(e);
+		return this;
+	}
+
+	@Override
+	public V pop() {
+		ConcurrentLinkedDeque<V> own = own();
+		V e = own.pollLast();
+		if (e == null)
+			e = steal(own);
+		if (e != null)
+			size.decrement();
+		return e;
+	}
+
+	/* Links the batch up first, then appends it with a single CAS */
+	@Override
+	public WorkStealingStorage<V> pushAll(Collection<? extends V> elements) {
+		if (!elements.isEmpty()) {
+			size.add(elements.size());
+			own().addAll(elements);
+		}
+		return this;
+	}
+
+	/* Drains the own deque first, only steals a single element */
+	@Override
+	public int drainTo(Collection<? super V> buffer, int max) {
+		if (max <= 0)
+			return 0;
+		ConcurrentLinkedDeque<V> own = own();
+		int n = 0;
+		for (V e; n < max && (e = own.pollLast()) != null; n++)
+			buffer.add(e);
+		if (n == 0) {
+			V e = steal(own);
+			if (e == null)
+				return 0;
+			buffer.add(e);
+			n++;
+		}
+		size.add(-n);
+		return n;
+	}
+
+	/* Start from a random victim so that thieves spread out
+	 * instead of all hammering the first registered deque, and
+	 * only probe a few: missing work only means polling again.
+	 */
+	private V steal(ConcurrentLinkedDeque<V> own) {
+		AtomicReferenceArray<Slot<V>> slots = this.slots;
+		int n = Math.max(1, Math.min(used, slots.length()));
+		int start = ThreadLocalRandom.current().nextInt(n);
+		for (int i=0, probes=Math.min(n, STEAL_PROBES); i<probes; i++) {
+			Slot<V> victim = slots.get((start + i) % n);
+			if (victim == null || victim.deque == own)
+				continue;
+			V e = victim.deque.pollFirst();
+			if (victim.orphaned && victim.deque.isEmpty())
+				release(victim);
+			if (e != null)
+				return e;
+		}
+		return null;
+	}
+}
@@ -53,7 +53,7 @@ public class CrawlSelector extends WebCrawler implements TargetSelector {
 		
 		@Override
 		public CrawlSelector build() {
-			return new CrawlSelector(getContext(), getMaxDepth());
+			return configure(new CrawlSelector(getContext(), getMaxDepth()));
 		}
 	}
 }
@@ -72,7 +72,7 @@ public class MultiCrawlSelector extends MultiWebCrawler implements TargetSelecto
 		
 		@Override
 		public MultiCrawlSelector build() {
-			return new MultiCrawlSelector(getContext(), getMaxDepth(), getMaxThreads());
+			return configure(new MultiCrawlSelector(getContext(), getMaxDepth(), getMaxThreads()));
 		}
 	}
 }
@@ -5,19 +5,46 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 
 import browser.common.Browser;
+import browser.common.BrowserPool;
 import browser.common.Configurators;
 import browser.common.Options;
 
 public class NextSelector implements TargetSelector, Closeable {
 	private Browser browser;
+	private BrowserPool pool;	// browser is given back to it when closing, if any
 	private Predicate<Browser> checker;
 	private Function<Browser, String> nextSelector;
 	
 	public NextSelector(String initialUrl, Predicate<Browser> checker, Function<Browser, String> nextSelector, Browser browser) {
+		this(checker, nextSelector, browser, null);
+		browser.visit(initialUrl);
+	}
+	
+	/* Leases a browser from the pool until closed, given back right away if the first visit fails */
+	public NextSelector(String initialUrl, Predicate<Browser> checker, Function<Browser, String> nextSelector, BrowserPool pool) {
+		this(checker, nextSelector, lease(pool), pool);
+		try {
+			browser.visit(initialUrl);
+		} catch (RuntimeException e) {
+			pool.check(browser);
+			throw e;
+		}
+	}
+	
+	private NextSelector(Predicate<Browser> checker, Function<Browser, String> nextSelector, Browser browser, BrowserPool pool) {
 		this.browser = browser;
+		this.pool = pool;
 		this.checker = checker;
 		this.nextSelector = nextSelector;
-		browser.visit(initialUrl);
+	}
+	
+	private static Browser lease(BrowserPool pool) {
+		try {
+			return pool.lease();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a browser", e);
+		}
 	}
 	
 	@Override
@@ -34,12 +61,16 @@ public class NextSelector implements TargetSelector, Closeable {
 	
 	@Override
 	public void close() {
-		browser.close();
+		if (pool != null)
+			pool.check(browser);
+		else
+			browser.close();
 	}
 
 	public static class Builder {
 		private String initialUrl;
 		private Browser browser;
+		private BrowserPool pool;
 		private Predicate<Browser> checker;
 		private Function<Browser, String> nextSelector;
 		
@@ -53,6 +84,11 @@ public class NextSelector implements TargetSelector, Closeable {
 			return this;
 		}
 		
+		public Builder setPool(BrowserPool pool) {
+			this.pool = pool;
+			return this;
+		}
+		
 		public Builder setChecker(Predicate<Browser> checker) {
 			this.checker = checker;
 			return this;
@@ -70,6 +106,8 @@ public class NextSelector implements TargetSelector, Closeable {
 				throw new IllegalArgumentException("Page element checker is null");
 			if (nextSelector == null)
 				throw new IllegalArgumentException("Next selector is null");
+			if (browser == null && pool != null)
+				return new NextSelector(initialUrl, checker, nextSelector, pool);
 			if (browser == null) // By default, use firefox
 				browser = new Browser(Configurators.firefox()
 					.config(Options.FIREFOX::defaultSettings)
@@ -1,5 +1,8 @@
 package test;
 
+import browser.common.BrowserPool;
+import browser.common.Configurators;
+import browser.common.Options;
 import crawler.FolderCrawler;
 import crawler.FolderCrawler.Builder;
 import crawler.model.Context.Strategy;
@@ -12,6 +15,7 @@ public class TestCrawlers {
 //		testFolderCrawler();
 //		testMultiFolderCrawler();
 //		testPageRank();
+//		testPooledMultiPageRank();
 		testMultiPageRank();
 	}
 	
@@ -67,4 +71,22 @@ public class TestCrawlers {
 			crawler.crawl();
 		}
 	}
+	
+	/* Browsers are launched once and shared by both crawls */
+	public static void testPooledMultiPageRank() throws Exception {
+		try (BrowserPool pool = new BrowserPool(Configurators.firefox()
+				.config(Options.FIREFOX::defaultSettings)
+				.build(), 5).warmUp()) {
+			for (String seed : new String[] { "http://www.runescape.com", "http://www.google.com" })
+				try (MultiPageRankCrawler crawler = new MultiPageRankCrawler.Builder()
+						.setOptimisations(100)
+						.setPool(pool)
+						.setMaxThreads(5)
+						.asContext(c -> c.push(seed))
+						.setMaxDepth(2)
+						.build()) {
+					crawler.crawl();
+				}
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import browser.common.Browser;
+import crawler.model.Context;
+import crawler.model.Context.Strategy;
+import crawler.model.FetchPolicy;
+import crawler.model.FetchPolicy.Backend;
+import crawler.model.HttpFetcher;
+import crawler.model.URLCanonicalizer;
+import crawler.model.WebCrawler;
+
+/* Runs against a local static site, no browser or network needed */
+public class TestFetchers {
+	private static final int PAGES = 50;
+
+	public static void main(String[] args) throws Exception {
+		HttpServer server = startServer();
+		String root = "http://localhost:" + server.getAddress().getPort();
+		try {
+			testHttpFetcher(root);
+			testFetchPolicy();
+			testHttpCrawl(root);
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	public static void testHttpFetcher(String root) throws Exception {
+		HttpFetcher fetcher = new HttpFetcher();
+		List<String> links = fetcher.fetch(root + "/page/0");
+		System.out.println("Links of /page/0:");
+		links.forEach(link -> System.out.println("\t" + link));
+		System.out.println("Links of /image.png: " + fetcher.fetch(root + "/image.png"));
+		System.out.println("Links of /missing: " + fetcher.fetch(root + "/missing"));
+	}
+
+	public static void testFetchPolicy() {
+		FetchPolicy policy = FetchPolicy.browser()
+			.host("example.com", Backend.HTTP)
+			.pattern(".*/app/.*", Backend.BROWSER);
+		for (String uri : new String[] {
+				"http://www.example.com/about",
+				"https://example.com:8443/app/home",
+				"http://www.google.com" })
+			System.out.println(uri + " -> " + policy.choose(uri));
+	}
+
+	/* Crawls the whole site through plain HTTP requests */
+	public static void testHttpCrawl(String root) throws Exception {
+		Context<String> context = Context.<String>create(Strategy.BREADTH_FIRST)
+			.filter(uri -> uri.startsWith(root))	// stays on the local site
+			.push(root + "/page/0");
+		WebCrawler crawler = new WebCrawler(context, 10) {
+			@Override
+			protected Browser createBrowser() {
+				throw new UnsupportedOperationException("Only static pages are crawled");
+			}
+		};
+		crawler.setFetchPolicy(FetchPolicy.http())
+			.setCanonicalizer(URLCanonicalizer.paths());
+		long start = System.currentTimeMillis();
+		crawler.crawl();
+		System.out.printf("Crawled %d pages in %d ms%n",
+			context.count(), System.currentTimeMillis() - start);
+	}
+
+	/* Every page links to the next two, through all sorts of hrefs */
+	private static HttpServer startServer() throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/page/", exchange -> {
+			int page = Integer.parseInt(exchange.getRequestURI().getPath().substring("/page/".length()));
+			String next = "/page/" + (page + 1) % PAGES, after = "" + (page + 2) % PAGES;
+			reply(exchange, "text/html; charset=utf-8", "<!DOCTYPE html><html><head>"
+				+ "<style>a[href='/page/style'] {}</style>"
+				+ "<script>document.write('<a href=\"/page/script\">')</script></head><body>"
+				+ "<!-- <a href=\"/page/comment\"> -->"
+				+ "<A class=link HREF=\"" + next + "#top\">next</A>"
+				+ "<a href=" + after + "?from=" + page + "&amp;x=1>after</a>"
+				+ "<a href='mailto:someone@example.com'>mail</a>"
+				+ "<a href=\"https://User@Example.COM:443/\">external</a>"
+				+ "</body></html>");
+		});
+		server.createContext("/image.png", exchange -> reply(exchange, "image/png", "<a href=\"/page/0\">"));
+		server.start();
+		return server;
+	}
+
+	private static void reply(HttpExchange exchange, String type, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", type);
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package test;
+
+import java.util.function.Function;
+
+import crawler.model.PolitenessStorage;
+
+/* Hosts keep their delay between crawls, even once nothing is left queued for them */
+public class TestPoliteness {
+	private static final long DELAY = 200;	// ms
+
+	public static void main(String[] args) throws Exception {
+		testDelayAfterIdle();
+	}
+
+	public static void testDelayAfterIdle() throws Exception {
+		PolitenessStorage<String> storage = PolitenessStorage.queue(Function.identity(), 1, DELAY);
+		long start = System.nanoTime();
+		check("First pop is immediate", "host".equals(storage.push("host").pop()));
+		storage.done("host");	// host is left with nothing queued nor in flight
+		storage.push("host");
+		check("Second pop waits", storage.pop() == null && storage.readyIn() > 0);
+		while (storage.readyIn() > 0)
+			Thread.sleep(storage.readyIn());
+		check("Second pop after the delay", "host".equals(storage.pop()));
+		long elapsed = (System.nanoTime() - start) / 1_000_000;
+		check("Waited " + elapsed + " ms >= " + DELAY + " ms", elapsed >= DELAY);
+		storage.done("host");
+		Thread.sleep(DELAY);
+		check("Idle host forgotten once its delay is over", storage.hosts() == 0);
+	}
+
+	private static void check(String what, boolean ok) {
+		System.out.println((ok ? "OK\t" : "FAILED\t") + what);
+		if (!ok)
+			throw new IllegalStateException(what);
+	}
+}
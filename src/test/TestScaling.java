@@ -0,0 +1,74 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import crawler.MultiGraphCrawler;
+import crawler.SyntheticGraph;
+import crawler.SyntheticGraph.Shape;
+import crawler.model.Context;
+import crawler.model.Context.Strategy;
+import crawler.model.CrawlMetrics;
+import crawler.model.CrawlMetrics.Phase;
+import crawler.model.HashedVisitedSet;
+import crawler.model.Log;
+
+/**
+ * Scaling report of MultiCrawler over a synthetic graph, for both
+ * strategies and 1, 2, 4... up to the given number of threads.
+ * <p>
+ * Arguments (all optional): shape (POWER_LAW or GRID), nodes, max
+ * threads, latency per expansion in us. E.g. {@code POWER_LAW 10000000
+ * 16 0} for 10M nodes, which needs a few GB of heap for the frontier.
+ */
+public class TestScaling {
+	private static final long SEED = 42;
+
+	public static void main(String[] args) throws Exception {
+		Shape shape = args.length > 0 ? Shape.valueOf(args[0].toUpperCase(Locale.ROOT)) : Shape.POWER_LAW;
+		int nodes = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() * 2;
+		long latency = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		Log.setLevel(Log.Level.OFF);
+
+		SyntheticGraph graph = SyntheticGraph.of(shape, nodes, SEED);
+		System.out.printf("%s, latency %d us, %d cores%n", graph, latency, Runtime.getRuntime().availableProcessors());
+		crawl(SyntheticGraph.of(shape, Math.max(1, nodes / 10), SEED), Strategy.BREADTH_FIRST, maxThreads, latency);	// warm-up
+		System.out.printf("%-14s %7s %10s %9s %11s %8s %10s%n",
+			"strategy", "threads", "visited", "time (s)", "pages/s", "speedup", "p99 (us)");
+		for (Strategy strategy : new Strategy[] { Strategy.BREADTH_FIRST, Strategy.DEPTH_FIRST }) {
+			double baseline = 0;
+			for (int threads : threadCounts(maxThreads)) {
+				long start = System.nanoTime();
+				CrawlMetrics metrics = crawl(graph, strategy, threads, latency);
+				double seconds = (System.nanoTime() - start) / 1e9, rate = metrics.getVisited() / seconds;
+				if (threads == 1)
+					baseline = rate;
+				System.out.printf("%-14s %7d %10d %9.2f %11.0f %7.2fx %10.1f%n",
+					strategy, threads, metrics.getVisited(), seconds, rate, rate / baseline,
+					metrics.getLatency(Phase.FRONTIER).getPercentile(99) / 1e3);
+			}
+		}
+	}
+
+	private static CrawlMetrics crawl(SyntheticGraph graph, Strategy strategy, int threads, long latency) throws Exception {
+		Context<Long> context = Context.<Long>create(strategy, new HashedVisitedSet<>((int) graph.size()))
+			.push(0L);
+		try (MultiGraphCrawler crawler = new MultiGraphCrawler(context, Integer.MAX_VALUE, threads, graph)) {
+			crawler.setLatency(latency, TimeUnit.MICROSECONDS)
+				.crawl();
+			return crawler.getMetrics();
+		}
+	}
+
+	/* 1, 2, 4... and max */
+	private static List<Integer> threadCounts(int max) {
+		List<Integer> counts = new ArrayList<>();
+		for (int threads=1; threads<max; threads*=2)
+			counts.add(threads);
+		counts.add(max);
+		return counts;
+	}
+}